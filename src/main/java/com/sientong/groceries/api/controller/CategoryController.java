@@ -1,8 +1,10 @@
 package com.sientong.groceries.api.controller;
 
+import com.sientong.groceries.api.response.CategoryFacetResponse;
 import com.sientong.groceries.api.response.CategoryResponse;
 import com.sientong.groceries.domain.category.Category;
 import com.sientong.groceries.domain.category.CategoryRepository;
+import com.sientong.groceries.domain.product.CatalogVersion;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -10,6 +12,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -19,12 +22,28 @@ import reactor.core.publisher.Mono;
 @Tag(name = "Categories", description = "Category management endpoints")
 public class CategoryController {
     private final CategoryRepository categoryRepository;
+    private final CatalogVersion catalogVersion;
 
     @GetMapping
-    @Operation(summary = "Get all categories", description = "Retrieves all available product categories")
-    public Flux<CategoryResponse> getCategories() {
-        return categoryRepository.findAll()
-                .map(CategoryResponse::fromDomain);
+    @Operation(summary = "Get all categories", description = "Retrieves all available product categories. " +
+            "Answers 304 when the catalog is unchanged since the ETag in If-None-Match")
+    public Mono<ResponseEntity<Flux<CategoryResponse>>> getCategories(ServerWebExchange exchange) {
+        // Categories are served from a per-instance snapshot, so the tag is the version that
+        // snapshot was loaded at rather than the database's latest.
+        return categoryRepository.findCatalogVersion().map(CatalogVersion::etag).flatMap(etag -> exchange.checkNotModified(etag)
+                ? Mono.empty()
+                : Mono.just(ResponseEntity.ok().eTag(etag).body(categoryRepository.findAll()
+                        .map(CategoryResponse::fromDomain))));
+    }
+
+    @GetMapping("/facets")
+    @Operation(summary = "Get category facets", description = "Retrieves every category with its number of products " +
+            "and of products in stock. Answers 304 when the catalog is unchanged since the ETag in If-None-Match")
+    public Mono<ResponseEntity<Flux<CategoryFacetResponse>>> getCategoryFacets(ServerWebExchange exchange) {
+        return catalogVersion.etag().flatMap(etag -> exchange.checkNotModified(etag)
+                ? Mono.empty()
+                : Mono.just(ResponseEntity.ok().eTag(etag).body(categoryRepository.findFacets()
+                        .map(CategoryFacetResponse::fromDomain))));
     }
 
     @GetMapping("/{id}")
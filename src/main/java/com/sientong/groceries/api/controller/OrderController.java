@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.sientong.groceries.api.request.OrderItemRequest;
 import com.sientong.groceries.api.request.OrderRequest;
 import com.sientong.groceries.api.response.OrderResponse;
 import com.sientong.groceries.domain.common.Quantity;
@@ -21,6 +22,7 @@ import com.sientong.groceries.domain.order.Order;
 import com.sientong.groceries.domain.order.OrderItem;
 import com.sientong.groceries.domain.order.OrderService;
 import com.sientong.groceries.domain.order.OrderStatus;
+import com.sientong.groceries.domain.product.Product;
 import com.sientong.groceries.domain.product.ProductService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -31,7 +33,6 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
@@ -64,16 +65,22 @@ public class OrderController {
                     schema = @Schema(implementation = OrderResponse.class)))
     @PreAuthorize("hasRole('CUSTOMER')")
     public Mono<ResponseEntity<OrderResponse>> createOrder(@Valid @RequestBody OrderRequest request) {
-        return Flux.fromIterable(request.getItems())
-            .flatMap(itemRequest -> productService.findById(itemRequest.getProductId())
-                .map(product -> OrderItem.of(
-                    product.getId(),
-                    product.getName(),
-                    product.getPrice(),
-                    Quantity.of(itemRequest.getQuantity())
-                ))
-            )
-            .collectList()
+        List<String> productIds = request.getItems().stream()
+            .map(OrderItemRequest::getProductId)
+            .toList();
+        return productService.findAllByIds(productIds)
+            .map(products -> request.getItems().stream()
+                .filter(itemRequest -> products.containsKey(itemRequest.getProductId()))
+                .map(itemRequest -> {
+                    Product product = products.get(itemRequest.getProductId());
+                    return OrderItem.of(
+                        product.getId(),
+                        product.getName(),
+                        product.getPrice(),
+                        Quantity.of(itemRequest.getQuantity())
+                    );
+                })
+                .toList())
         .map(orderItems -> Order.builder()
             .userId(request.getUserId())
             .items(orderItems)
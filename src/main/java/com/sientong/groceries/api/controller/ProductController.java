@@ -1,7 +1,14 @@
 package com.sientong.groceries.api.controller;
 
-import org.springframework.data.domain.PageRequest;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,15 +21,33 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sientong.groceries.api.request.ProductImportRow;
 import com.sientong.groceries.api.request.ProductRequest;
+import com.sientong.groceries.api.request.ReorderThresholdRequest;
+import com.sientong.groceries.api.request.StockShardsRequest;
 import com.sientong.groceries.api.request.StockUpdateRequest;
 import com.sientong.groceries.api.response.PaginatedResponse;
+import com.sientong.groceries.api.response.ProductImportReportResponse;
 import com.sientong.groceries.api.response.ProductResponse;
+import com.sientong.groceries.api.response.ProductSuggestionResponse;
+import com.sientong.groceries.api.response.ProductSummaryResponse;
+import com.sientong.groceries.api.response.StockAlertResponse;
 import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.inventory.StockAlertService;
+import com.sientong.groceries.domain.product.BestsellerRanking;
+import com.sientong.groceries.domain.product.CatalogVersion;
+import com.sientong.groceries.domain.product.CoPurchaseIndex;
 import com.sientong.groceries.domain.product.Product;
+import com.sientong.groceries.domain.product.ProductImportLine;
 import com.sientong.groceries.domain.product.ProductNotFoundException;
+import com.sientong.groceries.domain.product.ProductPage;
 import com.sientong.groceries.domain.product.ProductService;
+import com.sientong.groceries.domain.product.ProductSummary;
+import com.sientong.groceries.domain.product.StockNotShardableException;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -40,53 +65,140 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 @Tag(name = "Product", description = "Product management APIs")
 public class ProductController {
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final String CSV_MEDIA_TYPE = "text/csv";
+
     private final ProductService productService;
+    private final CatalogVersion catalogVersion;
+    private final StockAlertService stockAlertService;
+    private final ObjectMapper objectMapper;
 
     @Operation(
         summary = "Get all products",
-        description = "Retrieve a list of all available products"
+        description = "Retrieve a page of products ordered by name, by page number or by the cursor of the previous page. " +
+            "When a query is given, products are matched by full-text search and ordered by relevance"
     )
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "Successfully retrieved products"),
+        @ApiResponse(responseCode = "304", description = "Catalog unchanged since the ETag in If-None-Match"),
+        @ApiResponse(responseCode = "400", description = "Invalid page, size or cursor"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping
-    public Mono<PaginatedResponse<ProductResponse>> getAllProducts(
+    public Mono<ResponseEntity<PaginatedResponse<ProductSummaryResponse>>> getAllProducts(
         @RequestParam(defaultValue = "0") int page,
         @RequestParam(defaultValue = "12") int size,
         @RequestParam(required = false) String categoryId,
-        @RequestParam(required = false) String query
+        @RequestParam(required = false) String query,
+        @Parameter(description = "Opaque cursor returned as 'next' by the previous page")
+        @RequestParam(required = false) String cursor,
+        ServerWebExchange exchange
     ) {
-        PageRequest pageRequest = PageRequest.of(page, size);
-        Flux<Product> productsFlux = categoryId != null 
-            ? productService.findByCategory(categoryId)
-            : productService.findAll();
-            
-        if (query != null && !query.trim().isEmpty()) {
-            productsFlux = productsFlux.filter(product -> 
-                product.getName().toLowerCase().contains(query.toLowerCase()) ||
-                product.getDescription().toLowerCase().contains(query.toLowerCase())
-            );
+        if (page < 0 || size < 1) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page or size"));
         }
 
-        return productsFlux
-            .map(ProductResponse::fromDomain)
-            .collectList()
-            .map(products -> {
-                int start = (int) pageRequest.getOffset();
-                int end = Math.min((start + pageRequest.getPageSize()), products.size());
-                
-                return PaginatedResponse.<ProductResponse>builder()
-                    .content(products.subList(start, end))
+        // Read before querying, so a write racing with the query can only make the ETag
+        // older than the content, never newer.
+        return catalogVersion.etag().flatMap(etag -> {
+            if (exchange.checkNotModified(etag)) {
+                return Mono.empty();
+            }
+
+            Mono<ProductPage> productPage;
+            if (query != null && !query.trim().isEmpty()) {
+                productPage = productService.search(query.trim(), categoryId, page, size);
+            } else if (cursor != null) {
+                productPage = productService.findPageAfter(categoryId, cursor, size);
+            } else {
+                productPage = productService.findPage(categoryId, page, size);
+            }
+
+            return productPage
+                .onErrorMap(IllegalArgumentException.class,
+                    e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .map(result -> PaginatedResponse.<ProductSummaryResponse>builder()
+                    .content(result.getContent().stream().map(ProductSummaryResponse::fromDomain).toList())
                     .number(page)
                     .size(size)
-                    .totalElements(products.size())
-                    .totalPages((int) Math.ceil((double) products.size() / size))
-                    .isFirst(page == 0)
-                    .isLast(end >= products.size())
-                    .isEmpty(products.isEmpty())
-                    .build();
-            });
+                    .totalElements(result.getTotalElements())
+                    .totalPages((int) Math.ceil((double) result.getTotalElements() / size))
+                    .isFirst(cursor == null && page == 0)
+                    .isLast(result.isLast())
+                    .isEmpty(result.getContent().isEmpty())
+                    .next(result.getNextCursor())
+                    .build())
+                .map(body -> ResponseEntity.ok().eTag(etag).body(body));
+        });
+    }
+
+    @Operation(
+        summary = "Suggest products and categories",
+        description = "Autocomplete product and category names starting with the given prefix"
+    )
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved suggestions"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/suggest")
+    public Flux<ProductSuggestionResponse> suggest(
+        @Parameter(description = "Prefix typed by the user", required = true)
+        @RequestParam String prefix,
+        @Parameter(description = "Maximum number of suggestions")
+        @RequestParam(defaultValue = "10") int limit
+    ) {
+        return productService.suggest(prefix, Math.min(limit, MAX_SUGGESTIONS))
+                .map(ProductSuggestionResponse::fromDomain);
+    }
+
+    @Operation(
+        summary = "Get bestsellers",
+        description = "Products with the most units sold over a recent window of up to " +
+            BestsellerRanking.MAX_WINDOW_DAYS + " days, best first"
+    )
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved bestsellers"),
+        @ApiResponse(responseCode = "400", description = "Invalid window"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/bestsellers")
+    public Flux<ProductSummaryResponse> getBestsellers(
+        @RequestParam(required = false) String categoryId,
+        @Parameter(description = "Sales window in whole days, e.g. 7d")
+        @RequestParam(defaultValue = "7d") String window,
+        @RequestParam(defaultValue = "10") int limit
+    ) {
+        int days;
+        try {
+            days = (int) DurationStyle.detectAndParse(window, ChronoUnit.DAYS).toDays();
+        } catch (IllegalArgumentException e) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid window: " + window));
+        }
+        if (days < 1 || days > BestsellerRanking.MAX_WINDOW_DAYS || limit < 1) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid window or limit"));
+        }
+
+        return productService.findBestsellers(categoryId, days, Math.min(limit, BestsellerRanking.MAX_LIMIT))
+                .map(ProductSummary::fromProduct)
+                .map(ProductSummaryResponse::fromDomain);
+    }
+
+    @Operation(
+        summary = "Export product catalog",
+        description = "Stream the whole catalog as newline-delimited JSON, ordered by last update. " +
+            "Pass updatedSince to only receive products changed after that time"
+    )
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Catalog streamed successfully"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProductResponse> exportProducts(
+        @Parameter(description = "Only export products updated after this ISO-8601 date-time")
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedSince
+    ) {
+        return productService.export(updatedSince)
+                .map(ProductResponse::fromDomain);
     }
 
     @Operation(
@@ -95,17 +207,24 @@ public class ProductController {
     )
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "Successfully retrieved product"),
+        @ApiResponse(responseCode = "304", description = "Product unchanged since the ETag in If-None-Match"),
         @ApiResponse(responseCode = "404", description = "Product not found"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/{id}")
-    public Mono<ProductResponse> getProductById(
+    public Mono<ResponseEntity<ProductResponse>> getProductById(
         @Parameter(description = "Product ID", required = true)
-        @PathVariable String id
+        @PathVariable String id,
+        ServerWebExchange exchange
     ) {
         return productService.findById(id)
                 .switchIfEmpty(Mono.error(new ProductNotFoundException(id)))
-                .map(ProductResponse::fromDomain);
+                .flatMap(product -> {
+                    String etag = etag(product);
+                    return exchange.checkNotModified(etag)
+                            ? Mono.empty()
+                            : Mono.just(ResponseEntity.ok().eTag(etag).body(ProductResponse.fromDomain(product)));
+                });
     }
 
     @Operation(
@@ -117,15 +236,34 @@ public class ProductController {
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/category/{categoryId}")
-    public Flux<ProductResponse> getProductsByCategory(
+    public Flux<ProductSummaryResponse> getProductsByCategory(
         @Parameter(description = "Category ID", required = true)
         @PathVariable String categoryId
     ) {
-        return productService.findByCategory(categoryId)
-                .map(ProductResponse::fromDomain)
+        return productService.findSummariesByCategory(categoryId)
+                .map(ProductSummaryResponse::fromDomain)
                 .switchIfEmpty(Flux.empty());  
     }
 
+    @Operation(
+        summary = "Get products bought together",
+        description = "Products most often ordered together with the given product, most frequent first"
+    )
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved recommendations"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/{id}/bought-together")
+    public Flux<ProductSummaryResponse> getBoughtTogether(
+        @Parameter(description = "Product ID", required = true)
+        @PathVariable String id,
+        @RequestParam(defaultValue = "5") int limit
+    ) {
+        return productService.findBoughtTogether(id, Math.max(0, Math.min(limit, CoPurchaseIndex.MAX_NEIGHBOURS)))
+                .map(ProductSummary::fromProduct)
+                .map(ProductSummaryResponse::fromDomain);
+    }
+
     @Operation(
         summary = "Create new product",
         description = "Create a new product (SELLER role required)"
@@ -149,6 +287,38 @@ public class ProductController {
                 .map(ProductResponse::fromDomain);
     }
 
+    @Operation(
+        summary = "Import products",
+        description = "Create or replace products in bulk from newline-delimited JSON or CSV (SELLER role required). " +
+            "CSV input starts with the header row " + ProductImportRow.CSV_HEADER + ". " +
+            "Rows are written in batches and one report is streamed back per batch"
+    )
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Import reports streamed successfully"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - requires SELLER role"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('SELLER')")
+    public Flux<ProductImportReportResponse> importProducts(
+        @Parameter(description = "One product object per line", required = true)
+        @RequestBody Flux<String> lines
+    ) {
+        return importLines(lines, 0, line -> objectMapper.readValue(line, ProductImportRow.class));
+    }
+
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping(value = "/import", consumes = CSV_MEDIA_TYPE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('SELLER')")
+    public Flux<ProductImportReportResponse> importProductsCsv(
+        @Parameter(description = "Header row followed by one product per line", required = true)
+        @RequestBody Flux<String> lines
+    ) {
+        return importLines(lines, 1, ProductImportRow::fromCsv);
+    }
+
     @Operation(
         summary = "Update product",
         description = "Update an existing product (SELLER role required)"
@@ -218,4 +388,106 @@ public class ProductController {
         return productService.updateStock(id, Quantity.of(request.getQuantity(), request.getUnit()))
                 .map(ProductResponse::fromDomain);
     }
+
+    @Operation(
+        summary = "Shard product stock",
+        description = "Split the stock of a hot product across several rows so concurrent checkouts do not queue " +
+                      "on one row lock; 1 moves it back onto the product (SELLER role required)"
+    )
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Stock resharded successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid shard count"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - requires SELLER role"),
+        @ApiResponse(responseCode = "404", description = "Product not found"),
+        @ApiResponse(responseCode = "409", description = "Product stock is counted in memory"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PutMapping("/{id}/stock/shards")
+    @PreAuthorize("hasRole('SELLER')")
+    public Mono<ProductResponse> shardStock(
+        @Parameter(description = "Product ID", required = true)
+        @PathVariable String id,
+        @Parameter(description = "Stock shards request", required = true)
+        @Valid @RequestBody StockShardsRequest request
+    ) {
+        return productService.shardStock(id, request.getShards())
+                .onErrorMap(StockNotShardableException.class,
+                    e -> new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()))
+                .switchIfEmpty(Mono.error(new ProductNotFoundException(id)))
+                .map(ProductResponse::fromDomain);
+    }
+
+    @Operation(
+        summary = "Update product reorder threshold",
+        description = "Set the stock level at or below which the product raises a low-stock alert (SELLER role required)"
+    )
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Reorder threshold updated successfully"),
+        @ApiResponse(responseCode = "400", description = "Invalid threshold"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - requires SELLER role"),
+        @ApiResponse(responseCode = "404", description = "Product not found"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PutMapping("/{id}/reorder-threshold")
+    @PreAuthorize("hasRole('SELLER')")
+    public Mono<ProductResponse> updateReorderThreshold(
+        @Parameter(description = "Product ID", required = true)
+        @PathVariable String id,
+        @Parameter(description = "Reorder threshold request", required = true)
+        @Valid @RequestBody ReorderThresholdRequest request
+    ) {
+        return productService.updateReorderThreshold(id, request.getReorderThreshold())
+                .switchIfEmpty(Mono.error(new ProductNotFoundException(id)))
+                .map(ProductResponse::fromDomain);
+    }
+
+    @Operation(
+        summary = "Stream stock alerts",
+        description = "Stream events as products fall to or below their reorder threshold or are restocked above it " +
+                      "(SELLER role required)"
+    )
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Successfully established stock alert stream"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - requires SELLER role"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping(path = "/stock-alerts", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('SELLER')")
+    public Flux<StockAlertResponse> streamStockAlerts() {
+        return stockAlertService.stream()
+                .map(StockAlertResponse::fromDomain);
+    }
+
+    // Stock is cached separately from the rest of the product, so it is part of the tag
+    // rather than relying on updated_at alone.
+    private static String etag(Product product) {
+        return "\"" + product.getId() + "-"
+                + product.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli() + "-"
+                + product.getQuantity().getValue() + "\"";
+    }
+
+    // Line numbers are 1-based and count the CSV header, so they match what an editor shows.
+    private Flux<ProductImportReportResponse> importLines(Flux<String> lines, int headerLines, RowParser parser) {
+        Flux<ProductImportLine> parsed = lines.index()
+                .skip(headerLines)
+                .filter(line -> !line.getT2().isBlank())
+                .map(line -> {
+                    long number = line.getT1() + 1;
+                    try {
+                        return ProductImportLine.valid(number, parser.parse(line.getT2()).toDomain());
+                    } catch (Exception ex) {
+                        return ProductImportLine.invalid(number, ex.getMessage());
+                    }
+                });
+        return productService.importProducts(parsed)
+                .map(ProductImportReportResponse::fromDomain);
+    }
+
+    @FunctionalInterface
+    private interface RowParser {
+        ProductImportRow parse(String line) throws Exception;
+    }
 }
@@ -0,0 +1,115 @@
+package com.sientong.groceries.api.request;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.product.Category;
+import com.sientong.groceries.domain.product.Product;
+
+import lombok.Data;
+
+/**
+ * A product row of a bulk import, read from either an NDJSON object or a CSV line with the
+ * columns listed in {@link #CSV_HEADER}. Rows without an ID get a generated one; rows with an
+ * existing ID replace that product.
+ */
+@Data
+public class ProductImportRow {
+    public static final String CSV_HEADER =
+            "id,name,description,price,currency,categoryId,categoryName,quantity,unit,imageUrl";
+    private static final int CSV_COLUMNS = 10;
+
+    private String id;
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private String currency;
+    private String categoryId;
+    private String categoryName;
+    private Integer quantity;
+    private String unit;
+    private String imageUrl;
+
+    public Product toDomain() {
+        if (price == null) {
+            throw new IllegalArgumentException("Price is required");
+        }
+        if (categoryId == null || categoryId.isBlank()) {
+            throw new IllegalArgumentException("Category ID is required");
+        }
+        if (quantity == null) {
+            throw new IllegalArgumentException("Quantity is required");
+        }
+        return Product.builder()
+                .id(id != null && !id.isBlank() ? id : UUID.randomUUID().toString())
+                .name(name)
+                .description(description)
+                .price(Money.of(price, currency))
+                .category(Category.of(categoryId, categoryName))
+                .quantity(Quantity.of(quantity, unit != null && !unit.isBlank() ? unit : "piece"))
+                .imageUrl(imageUrl)
+                .build();
+    }
+
+    public static ProductImportRow fromCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != CSV_COLUMNS) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %d columns but found %d", CSV_COLUMNS, fields.size()));
+        }
+
+        ProductImportRow row = new ProductImportRow();
+        row.setId(emptyToNull(fields.get(0)));
+        row.setName(emptyToNull(fields.get(1)));
+        row.setDescription(emptyToNull(fields.get(2)));
+        row.setPrice(fields.get(3).isBlank() ? null : new BigDecimal(fields.get(3).trim()));
+        row.setCurrency(emptyToNull(fields.get(4)));
+        row.setCategoryId(emptyToNull(fields.get(5)));
+        row.setCategoryName(emptyToNull(fields.get(6)));
+        row.setQuantity(fields.get(7).isBlank() ? null : Integer.valueOf(fields.get(7).trim()));
+        row.setUnit(emptyToNull(fields.get(8)));
+        row.setImageUrl(emptyToNull(fields.get(9)));
+        return row;
+    }
+
+    // RFC 4180 quoting within a single line: fields may be wrapped in double quotes and a
+    // doubled quote inside a quoted field stands for one quote character.
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
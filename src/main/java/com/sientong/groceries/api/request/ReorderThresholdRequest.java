@@ -0,0 +1,12 @@
+package com.sientong.groceries.api.request;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+
+@Data
+public class ReorderThresholdRequest {
+    @NotNull(message = "Reorder threshold is required")
+    @PositiveOrZero(message = "Reorder threshold must not be negative")
+    private Integer reorderThreshold;
+}
@@ -0,0 +1,25 @@
+package com.sientong.groceries.api.response;
+
+import com.sientong.groceries.domain.category.CategoryFacet;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryFacetResponse {
+    private CategoryResponse category;
+    private long productCount;
+    private long inStockCount;
+
+    public static CategoryFacetResponse fromDomain(CategoryFacet facet) {
+        return CategoryFacetResponse.builder()
+                .category(CategoryResponse.fromDomain(facet.getCategory()))
+                .productCount(facet.getProductCount())
+                .inStockCount(facet.getInStockCount())
+                .build();
+    }
+}
@@ -16,4 +16,5 @@ public class PaginatedResponse<T> {
     private boolean isFirst;     // Lombok will generate isFirst() and isFirst() builder method
     private boolean isLast;      // Lombok will generate isLast() and isLast() builder method
     private boolean isEmpty;     // Lombok will generate isEmpty() and isEmpty() builder method
+    private String next;         // Opaque cursor for the following page, null on the last page
 }
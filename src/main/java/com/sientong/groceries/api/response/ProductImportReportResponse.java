@@ -0,0 +1,34 @@
+package com.sientong.groceries.api.response;
+
+import java.util.List;
+
+import com.sientong.groceries.domain.product.ProductImportReport;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class ProductImportReportResponse {
+    long batch;
+    int imported;
+    int failed;
+    List<LineError> errors;
+
+    @Value
+    public static class LineError {
+        long line;
+        String message;
+    }
+
+    public static ProductImportReportResponse fromDomain(ProductImportReport report) {
+        return ProductImportReportResponse.builder()
+                .batch(report.getBatch())
+                .imported(report.getImported())
+                .failed(report.getFailed())
+                .errors(report.getErrors().stream()
+                        .map(error -> new LineError(error.getLine(), error.getMessage()))
+                        .toList())
+                .build();
+    }
+}
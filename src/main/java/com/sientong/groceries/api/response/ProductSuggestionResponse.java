@@ -0,0 +1,22 @@
+package com.sientong.groceries.api.response;
+
+import com.sientong.groceries.domain.product.ProductSuggestion;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class ProductSuggestionResponse {
+    String type;
+    String id;
+    String text;
+
+    public static ProductSuggestionResponse fromDomain(ProductSuggestion suggestion) {
+        return ProductSuggestionResponse.builder()
+                .type(suggestion.getType().name())
+                .id(suggestion.getId())
+                .text(suggestion.getText())
+                .build();
+    }
+}
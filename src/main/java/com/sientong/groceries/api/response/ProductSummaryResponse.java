@@ -0,0 +1,32 @@
+package com.sientong.groceries.api.response;
+
+import java.math.BigDecimal;
+
+import com.sientong.groceries.domain.product.ProductSummary;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ProductSummaryResponse {
+    private String id;
+    private String name;
+    private BigDecimal price;
+    private String currency;
+    private String unit;
+    private String imageUrl;
+    private boolean inStock;
+
+    public static ProductSummaryResponse fromDomain(ProductSummary product) {
+        return ProductSummaryResponse.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .price(product.getPrice().getAmount())
+                .currency(product.getPrice().getCurrency())
+                .unit(product.getUnit())
+                .imageUrl(product.getImageUrl())
+                .inStock(product.isInStock())
+                .build();
+    }
+}
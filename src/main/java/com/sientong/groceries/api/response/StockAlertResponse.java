@@ -0,0 +1,28 @@
+package com.sientong.groceries.api.response;
+
+import java.time.LocalDateTime;
+
+import com.sientong.groceries.domain.inventory.StockAlert;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class StockAlertResponse {
+    String productId;
+    String type;
+    int quantity;
+    int reorderThreshold;
+    LocalDateTime occurredAt;
+
+    public static StockAlertResponse fromDomain(StockAlert alert) {
+        return StockAlertResponse.builder()
+                .productId(alert.getProductId())
+                .type(alert.getType().name())
+                .quantity(alert.getQuantity())
+                .reorderThreshold(alert.getReorderThreshold())
+                .occurredAt(alert.getOccurredAt())
+                .build();
+    }
+}
@@ -2,16 +2,28 @@ package com.sientong.groceries.domain.cart;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import com.sientong.groceries.domain.common.Money;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
-
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * A user's cart. Changes made through {@link #addItem}, {@link #updateItem},
+ * {@link #removeItem} and {@link #clear} are tracked until {@link #markPersisted()}, so
+ * the repository writes only the lines that changed rather than the whole cart.
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -25,6 +37,18 @@ public class Cart {
     private Money total = Money.ZERO;
     @Builder.Default
     private LocalDateTime updatedAt = LocalDateTime.now();
+    @Builder.Default
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Set<String> changedItemIds = new LinkedHashSet<>();
+    @Builder.Default
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Set<String> removedItemIds = new LinkedHashSet<>();
 
     public void addItem(CartItem item) {
         if (items == null) {
@@ -38,8 +62,10 @@ public class Cart {
         if (existingItem.isPresent()) {
             CartItem existing = existingItem.get();
             existing.setQuantity(existing.getQuantity() + item.getQuantity());
+            changedItemIds.add(existing.getId());
         } else {
             items.add(item);
+            changedItemIds.add(item.getId());
         }
 
         recalculateTotal();
@@ -59,6 +85,7 @@ public class Cart {
                     if (updatedItem.getUnit() != null) {
                         item.setUnit(updatedItem.getUnit());
                     }
+                    changedItemIds.add(itemId);
                 });
 
         recalculateTotal();
@@ -70,7 +97,10 @@ public class Cart {
             return;
         }
 
-        items.removeIf(item -> item.getId().equals(itemId));
+        if (items.removeIf(item -> item.getId().equals(itemId))) {
+            changedItemIds.remove(itemId);
+            removedItemIds.add(itemId);
+        }
         recalculateTotal();
     }
 
@@ -78,13 +108,63 @@ public class Cart {
         if (items == null) {
             items = new ArrayList<>();
         } else {
+            items.forEach(item -> removedItemIds.add(item.getId()));
             items.clear();
         }
+        changedItemIds.clear();
         total = Money.ZERO;
         updatedAt = LocalDateTime.now();
         return this;
     }
 
+    /**
+     * Replaces all lines, as when restoring a saved copy of the cart. Every new line counts as
+     * changed and every line not among them as removed.
+     */
+    public void replaceItems(List<CartItem> newItems) {
+        Set<String> kept = new LinkedHashSet<>();
+        newItems.forEach(item -> kept.add(item.getId()));
+        getItems().stream()
+                .map(CartItem::getId)
+                .filter(id -> !kept.contains(id))
+                .forEach(removedItemIds::add);
+        removedItemIds.removeAll(kept);
+        changedItemIds.addAll(kept);
+        items = new ArrayList<>(newItems);
+        recalculateTotal();
+    }
+
+    /** A deep copy, including the changes not yet persisted. */
+    public Cart copy() {
+        Cart copy = Cart.builder()
+                .id(id)
+                .userId(userId)
+                .items(new ArrayList<>(getItems().stream().map(CartItem::copy).toList()))
+                .total(total)
+                .updatedAt(updatedAt)
+                .build();
+        copy.changedItemIds.addAll(changedItemIds);
+        copy.removedItemIds.addAll(removedItemIds);
+        return copy;
+    }
+
+    /** Lines added or changed since the cart was loaded or last persisted. */
+    public List<CartItem> getChangedItems() {
+        return getItems().stream()
+                .filter(item -> changedItemIds.contains(item.getId()))
+                .toList();
+    }
+
+    /** Ids of lines removed since the cart was loaded or last persisted. */
+    public Set<String> getRemovedItemIds() {
+        return Set.copyOf(removedItemIds);
+    }
+
+    public void markPersisted() {
+        changedItemIds.clear();
+        removedItemIds.clear();
+    }
+
     private void recalculateTotal() {
         if (items == null || items.isEmpty()) {
             total = Money.ZERO;
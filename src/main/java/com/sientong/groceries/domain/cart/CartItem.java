@@ -39,6 +39,22 @@ public class CartItem {
                 .build();
     }
 
+    public CartItem copy() {
+        return CartItem.builder()
+                .id(id)
+                .cartId(cartId)
+                .productId(productId)
+                .name(name)
+                .description(description)
+                .price(price)
+                .quantity(quantity)
+                .unit(unit)
+                .imageUrl(imageUrl)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .build();
+    }
+
     public Money getSubtotal() {
         return price.multiply(quantity);
     }
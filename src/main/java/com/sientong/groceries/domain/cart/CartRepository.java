@@ -1,11 +1,26 @@
 package com.sientong.groceries.domain.cart;
 
+import java.util.function.Function;
+
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface CartRepository {
     Mono<Cart> findByUserId(String userId);
     Mono<Cart> save(Cart cart);
+
+    /**
+     * Adds the item to the user's cart, creating the cart if needed and merging with any line
+     * for the same product, without loading the cart first. {@code beforeCommit} is given the
+     * merged line and runs in the same transaction; if it fails, nothing is written.
+     */
+    Mono<Cart> addItem(String userId, CartItem item, Function<CartItem, Mono<Void>> beforeCommit);
+    /**
+     * Makes the user's cart durable in the carts tables, for stores that write behind;
+     * completes at once for ones that write through.
+     */
+    Mono<Void> flush(String userId);
+
     Mono<CartItem> saveCartItem(CartItem item);
     Mono<Void> deleteCartItem(String itemId);
     Mono<Void> deleteAllCartItems(String cartId);
@@ -7,6 +7,8 @@ import java.util.UUID;
 import org.springframework.stereotype.Service;
 
 import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.domain.common.MutationSerializer;
+import com.sientong.groceries.domain.inventory.InventoryService;
 import com.sientong.groceries.domain.product.Product;
 import com.sientong.groceries.domain.product.ProductService;
 
@@ -14,12 +16,19 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 
+/**
+ * Cart operations. Mutations of one user's cart run one at a time (see {@link MutationSerializer}),
+ * so double clicks and a second device queue up instead of overwriting each other's changes;
+ * different users' carts are not serialized against each other.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class CartServiceImpl implements CartService {
     private final CartRepository cartRepository;
     private final ProductService productService;
+    private final InventoryService inventoryService;
+    private final MutationSerializer<String> cartLanes;
 
     @Override
     public Mono<Cart> getCart(String userId) {
@@ -31,52 +40,53 @@ public class CartServiceImpl implements CartService {
                 }));
     }
 
+    // The line is merged in the database rather than in a loaded cart, so adds from two tabs
+    // both count; the hold covers the merged line and is taken before the add commits.
     @Override
     public Mono<Cart> addToCart(String userId, CartItem item) {
         log.debug("Adding item to cart for user: {}", userId);
-        return getCart(userId)
-                .flatMap(cart -> productService.findById(item.getProductId())
-                        .map(product -> enrichCartItem(item, product))
-                        .map(enrichedItem -> {
-                            cart.addItem(enrichedItem);
-                            return cart;
-                        })
-                        .switchIfEmpty(Mono.error(new RuntimeException("Product not found"))))
-                .doOnError(ex -> log.error("Error adding item to cart", ex))
-                .flatMap(cartRepository::save)
-                .doOnError(ex -> log.error("Error saving cart", ex));
+        return cartLanes.execute(userId, () -> productService.findById(item.getProductId())
+                        .switchIfEmpty(Mono.error(new RuntimeException("Product not found")))
+                        .flatMap(product -> cartRepository.addItem(userId, enrichCartItem(item, product),
+                                line -> inventoryService.hold(userId, line.getProductId(), line.getQuantity()))))
+                .doOnError(ex -> log.error("Error adding item to cart", ex));
     }
 
     @Override
     public Mono<Cart> updateCartItem(String userId, String itemId, CartItem updatedItem) {
         log.debug("Updating item {} in cart for user: {}", itemId, userId);
-        return getCart(userId)
-                .map(cart -> {
-                    cart.updateItem(itemId, updatedItem);
-                    return cart;
-                })
-                .flatMap(cartRepository::save)
+        return cartLanes.execute(userId, () -> getCart(userId)
+                        .flatMap(cart -> {
+                            String productId = productIdOf(cart, itemId);
+                            cart.updateItem(itemId, updatedItem);
+                            return productId != null ? holdStock(userId, cart, productId) : Mono.just(cart);
+                        })
+                        .flatMap(cartRepository::save))
                 .doOnError(ex -> log.error("Error updating cart item", ex));
     }
 
     @Override
     public Mono<Cart> removeItem(String userId, String itemId) {
         log.debug("Removing item {} from cart for user: {}", itemId, userId);
-        return getCart(userId)
-                .map(cart -> {
-                    cart.removeItem(itemId);
-                    return cart;
-                })
-                .flatMap(cartRepository::save)
+        return cartLanes.execute(userId, () -> getCart(userId)
+                        .flatMap(cart -> {
+                            String productId = productIdOf(cart, itemId);
+                            cart.removeItem(itemId);
+                            return productId != null
+                                    ? inventoryService.release(userId, productId).thenReturn(cart)
+                                    : Mono.just(cart);
+                        })
+                        .flatMap(cartRepository::save))
                 .doOnError(ex -> log.error("Error removing item from cart", ex));
     }
 
     @Override
     public Mono<Cart> clearCart(String userId) {
         log.debug("Clearing cart for user: {}", userId);
-        return getCart(userId)
-                .map(Cart::clear)
-                .flatMap(cartRepository::save)
+        return cartLanes.execute(userId, () -> getCart(userId)
+                        .map(Cart::clear)
+                        .flatMap(cart -> inventoryService.releaseAll(userId).thenReturn(cart))
+                        .flatMap(cartRepository::save))
                 .doOnError(ex -> log.error("Error clearing cart", ex));
     }
 
@@ -90,6 +100,25 @@ public class CartServiceImpl implements CartService {
                         .build());
     }
 
+    // Holds the cart's whole quantity of the product, so the hold follows the cart line
+    // rather than accumulating with every add.
+    private Mono<Cart> holdStock(String userId, Cart cart, String productId) {
+        int quantity = cart.getItems().stream()
+                .filter(item -> productId.equals(item.getProductId()))
+                .mapToInt(CartItem::getQuantity)
+                .sum();
+        return inventoryService.hold(userId, productId, quantity)
+                .thenReturn(cart);
+    }
+
+    private String productIdOf(Cart cart, String itemId) {
+        return cart.getItems().stream()
+                .filter(item -> item.getId().equals(itemId))
+                .map(CartItem::getProductId)
+                .findFirst()
+                .orElse(null);
+    }
+
     private Mono<Cart> createEmptyCart(String userId) {
         Cart cart = Cart.builder()
                 .id(UUID.randomUUID().toString())
@@ -0,0 +1,12 @@
+package com.sientong.groceries.domain.category;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class CategoryFacet {
+    Category category;
+    long productCount;
+    long inStockCount;
+}
@@ -6,6 +6,9 @@ import reactor.core.publisher.Mono;
 public interface CategoryRepository {
     Flux<Category> findAll();
     Mono<Category> findById(String id);
+    /** Catalog version that the categories returned by {@link #findAll()} are at least as new as. */
+    Mono<Long> findCatalogVersion();
+    Flux<CategoryFacet> findFacets();
     Mono<Category> save(Category category);
     Mono<Void> deleteById(String id);
 }
@@ -1,18 +1,21 @@
 package com.sientong.groceries.domain.checkout;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import org.springframework.stereotype.Service;
 
-import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.cart.CartRepository;
 import com.sientong.groceries.domain.notification.NotificationService;
 import com.sientong.groceries.domain.notification.NotificationType;
 import com.sientong.groceries.domain.order.Order;
+import com.sientong.groceries.domain.order.OrderItem;
 import com.sientong.groceries.domain.order.OrderStatus;
 import com.sientong.groceries.domain.payment.PaymentService;
-import com.sientong.groceries.domain.product.Product;
 import com.sientong.groceries.domain.product.ProductRepository;
 
 import lombok.RequiredArgsConstructor;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
@@ -23,37 +26,50 @@ public class CheckoutService {
     private final ProductRepository productRepository;
     private final PaymentService paymentService;
     private final NotificationService notificationService;
+    private final CartRepository cartRepository;
 
     public Mono<Order> processCheckout(Order order) {
         return validateOrder(order)
+                .flatMap(this::flushCart)
+                .flatMap(this::reserveInventory)
                 .flatMap(validOrder -> processPayment(validOrder)
-                        .flatMap(this::updateInventory)
+                        .onErrorResume(ex -> releaseInventory(validOrder).then(Mono.error(ex)))
+                        .map(this::confirmOrder)
                         .flatMap(this::sendNotifications));
     }
 
     private Mono<Order> validateOrder(Order order) {
         return Mono.just(order)
                 .filter(o -> o.getStatus() == OrderStatus.PENDING)
-                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Order must be in PENDING status")))
-                .flatMap(this::validateInventory);
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Order must be in PENDING status")));
     }
 
-    private Mono<Order> validateInventory(Order order) {
-        return Mono.just(order)
-                .flatMap(o -> Flux.fromIterable(o.getItems())
-                        .<Product>flatMap(item -> productRepository.findById(item.getProductId())
-                                .flatMap(product -> {
-                                    if (product.getQuantity().getValue() >= item.getQuantity().getValue()) {
-                                        return Mono.just(product);
-                                    }
-                                    return Mono.error(() -> new IllegalStateException(
-                                            String.format("Insufficient inventory for product %s: requested %d, available %d",
-                                                    item.getProductId(),
-                                                    item.getQuantity().getValue(),
-                                                    product.getQuantity().getValue())));
-                                }))
-                        .collectList()
-                        .thenReturn(order));
+    // A cart store that writes behind is flushed first, so the cart being checked out is the
+    // one in the database.
+    private Mono<Order> flushCart(Order order) {
+        return cartRepository.flush(order.getUserId())
+                .thenReturn(order);
+    }
+
+    // Stock is taken before payment in a single conditional statement, so two checkouts can
+    // never both be promised the last unit; the shopper's cart holds become the sale. Fails
+    // with InsufficientStockException naming the short products, in which case nothing was taken.
+    private Mono<Order> reserveInventory(Order order) {
+        return productRepository.decrementStock(order.getUserId(), quantities(order))
+                .thenReturn(order);
+    }
+
+    private Mono<Void> releaseInventory(Order order) {
+        return productRepository.incrementStock(quantities(order));
+    }
+
+    private Map<String, Integer> quantities(Order order) {
+        return order.getItems().stream()
+                .collect(Collectors.toMap(
+                        OrderItem::getProductId,
+                        item -> item.getQuantity().getValue(),
+                        Integer::sum,
+                        LinkedHashMap::new));
     }
 
     private Mono<Tuple2<Order, Boolean>> processPayment(Order order) {
@@ -67,19 +83,10 @@ public class CheckoutService {
                 });
     }
 
-    private Mono<Order> updateInventory(Tuple2<Order, Boolean> orderAndPayment) {
+    private Order confirmOrder(Tuple2<Order, Boolean> orderAndPayment) {
         Order order = orderAndPayment.getT1();
-        return Flux.fromIterable(order.getItems())
-                .<Product>flatMap(item -> productRepository.updateStock(
-                        item.getProductId(),
-                        Quantity.of(-item.getQuantity().getValue())
-                ))
-                .collectList()
-                .thenReturn(order)
-                .map(o -> {
-                    o.updateStatus(OrderStatus.CONFIRMED);
-                    return o;
-                });
+        order.updateStatus(OrderStatus.CONFIRMED);
+        return order;
     }
 
     private Mono<Order> sendNotifications(Order order) {
@@ -0,0 +1,13 @@
+package com.sientong.groceries.domain.common;
+
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs mutations one at a time per key, in subscription order, while mutations for different
+ * keys run side by side.
+ */
+public interface MutationSerializer<K> {
+    <V> Mono<V> execute(K key, Supplier<Mono<V>> mutation);
+}
@@ -1,20 +1,20 @@
 package com.sientong.groceries.domain.common;
 
 import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Value;
 
 @Value
 public class Quantity {
-    @Positive(message = "Quantity must be positive")
+    @PositiveOrZero(message = "Quantity cannot be negative")
     int value;
 
     @NotBlank(message = "Unit cannot be empty")
     String unit;
 
     private Quantity(int value, String unit) {
-        if (value <= 0) {
-            throw new IllegalArgumentException("Quantity must be positive");
+        if (value < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
         }
         if (unit == null || unit.trim().isEmpty()) {
             throw new IllegalArgumentException("Unit cannot be null or empty");
@@ -0,0 +1,80 @@
+package com.sientong.groceries.domain.inventory;
+
+import java.time.Duration;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.sientong.groceries.domain.product.InsufficientStockException;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Stock holds for carts and checkouts. A hold sets aside stock for one holder (a user) until
+ * it expires, is released, or is turned into a sale at checkout; other shoppers only see
+ * stock minus active holds. Holds are refreshed whenever the holder touches the same product
+ * again, and expired ones are released in batches by a background sweep.
+ */
+@Slf4j
+@Service
+public class InventoryService {
+    static final int SWEEP_BATCH_SIZE = 500;
+
+    private final ReservationRepository reservationRepository;
+    private final Duration holdTtl;
+
+    public InventoryService(
+            ReservationRepository reservationRepository,
+            @Value("${inventory.reservations.ttl:15m}") Duration holdTtl) {
+        this.reservationRepository = reservationRepository;
+        this.holdTtl = holdTtl;
+    }
+
+    /**
+     * Sets the holder's hold on a product to {@code quantity}, replacing any previous hold.
+     * Fails with {@link InsufficientStockException} when not enough unheld stock is left.
+     */
+    public Mono<Void> hold(String holderId, String productId, int quantity) {
+        if (quantity <= 0) {
+            return release(holderId, productId);
+        }
+        return reservationRepository.hold(holderId, productId, quantity, holdTtl)
+                .flatMap(held -> held
+                        ? Mono.<Void>empty()
+                        : Mono.error(new InsufficientStockException(Set.of(productId))));
+    }
+
+    public Mono<Void> release(String holderId, String productId) {
+        return reservationRepository.release(holderId, productId);
+    }
+
+    public Mono<Void> releaseAll(String holderId) {
+        return reservationRepository.releaseAll(holderId);
+    }
+
+    public Mono<Integer> availableToSell(String productId) {
+        return reservationRepository.availableToSell(productId);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.reservations.sweep-interval:PT30S}")
+    public Mono<Void> releaseExpiredHolds() {
+        return reservationRepository.releaseExpired(SWEEP_BATCH_SIZE)
+                .expand(released -> released >= SWEEP_BATCH_SIZE
+                        ? reservationRepository.releaseExpired(SWEEP_BATCH_SIZE)
+                        : Mono.empty())
+                .reduce(0L, Long::sum)
+                .doOnNext(released -> {
+                    if (released > 0) {
+                        log.info("Released {} expired stock holds", released);
+                    }
+                })
+                .onErrorResume(ex -> {
+                    log.error("Error releasing expired stock holds", ex);
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
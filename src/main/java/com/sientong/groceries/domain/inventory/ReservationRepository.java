@@ -0,0 +1,13 @@
+package com.sientong.groceries.domain.inventory;
+
+import java.time.Duration;
+
+import reactor.core.publisher.Mono;
+
+public interface ReservationRepository {
+    Mono<Boolean> hold(String holderId, String productId, int quantity, Duration ttl);
+    Mono<Void> release(String holderId, String productId);
+    Mono<Void> releaseAll(String holderId);
+    Mono<Long> releaseExpired(int limit);
+    Mono<Integer> availableToSell(String productId);
+}
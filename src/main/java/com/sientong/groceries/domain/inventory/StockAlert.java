@@ -0,0 +1,35 @@
+package com.sientong.groceries.domain.inventory;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import lombok.Value;
+
+/**
+ * A product's stock crossing its reorder threshold: falling to or below it ({@link Type#LOW})
+ * or rising back above it ({@link Type#RESTOCKED}).
+ */
+@Value
+public class StockAlert {
+    public enum Type {
+        LOW,
+        RESTOCKED
+    }
+
+    String productId;
+    Type type;
+    int quantity;
+    int reorderThreshold;
+    LocalDateTime occurredAt;
+
+    /** The alert raised by a stock write, if it crossed the threshold. */
+    public static Optional<StockAlert> of(StockLevel level) {
+        boolean wasLow = level.previous() <= level.reorderThreshold();
+        boolean isLow = level.quantity() <= level.reorderThreshold();
+        if (wasLow == isLow) {
+            return Optional.empty();
+        }
+        return Optional.of(new StockAlert(level.productId(), isLow ? Type.LOW : Type.RESTOCKED, level.quantity(),
+                level.reorderThreshold(), LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,59 @@
+package com.sientong.groceries.domain.inventory;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import org.springframework.stereotype.Service;
+
+import com.sientong.groceries.domain.notification.NotificationService;
+import com.sientong.groceries.domain.notification.NotificationType;
+import com.sientong.groceries.domain.user.UserRepository;
+import com.sientong.groceries.domain.user.UserRole;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Fans out stock alerts as stock writes cross reorder thresholds, replacing polls of
+ * {@code findLowStockProducts}. Every alert goes to the live stream for seller dashboards;
+ * products running low also notify each seller with {@link NotificationType#STOCK_ALERT}.
+ * Alerts are published after the write commits and never fail it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockAlertService {
+    private final NotificationService notificationService;
+    private final UserRepository userRepository;
+    // Dashboards that fall behind miss alerts rather than hold up stock writes.
+    private final Sinks.Many<StockAlert> alerts = Sinks.many().multicast().directBestEffort();
+
+    /** Publishes an alert for every committed stock write that crossed its threshold. */
+    public void stockChanged(Collection<StockLevel> levels) {
+        levels.forEach(level -> StockAlert.of(level).ifPresent(this::publish));
+    }
+
+    public Flux<StockAlert> stream() {
+        return alerts.asFlux();
+    }
+
+    private void publish(StockAlert alert) {
+        alerts.emitNext(alert, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(10)));
+        if (alert.getType() != StockAlert.Type.LOW) {
+            return;
+        }
+        userRepository.findByRole(UserRole.SELLER)
+                .flatMap(seller -> notificationService.createNotification(
+                        seller.getId(),
+                        "Low Stock",
+                        String.format("Product %s is down to %d, at or below its reorder threshold of %d.",
+                                alert.getProductId(), alert.getQuantity(), alert.getReorderThreshold()),
+                        NotificationType.STOCK_ALERT,
+                        alert.getProductId()))
+                .subscribe(
+                        notification -> { },
+                        ex -> log.error("Error notifying sellers of low stock for product {}", alert.getProductId(), ex));
+    }
+}
@@ -0,0 +1,5 @@
+package com.sientong.groceries.domain.inventory;
+
+/** A product's stock before and after a write, with the threshold it is checked against. */
+public record StockLevel(String productId, int previous, int quantity, int reorderThreshold) {
+}
@@ -26,6 +26,9 @@ public class OrderItem {
         if (quantity == null) {
             throw new IllegalArgumentException("Quantity cannot be null");
         }
+        if (quantity.getValue() == 0) {
+            throw new IllegalArgumentException("Order item quantity must be positive");
+        }
 
         this.productId = productId;
         this.productName = productName;
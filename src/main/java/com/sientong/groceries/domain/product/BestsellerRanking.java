@@ -0,0 +1,166 @@
+package com.sientong.groceries.domain.product;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory bestseller ranking over the last {@link #MAX_WINDOW_DAYS} days. Units sold are
+ * kept per product in a ring of daily buckets, so recording a sale is O(1) and old days fall
+ * out of the ring on their own. The top {@link #MAX_LIMIT} products of each (category, window)
+ * are computed with a bounded heap on first request and reused until the next day, or until
+ * the refresh interval has passed with sales in between, so neither repeated home page
+ * requests nor a steady stream of sales make it rescan the counters more than once per
+ * interval. Cancelled orders are taken back out with {@link #subtract}.
+ */
+@Component
+public class BestsellerRanking {
+    public static final int MAX_WINDOW_DAYS = 30;
+    public static final int MAX_LIMIT = 50;
+
+    private static final Comparator<Entry> BY_UNITS =
+            Comparator.comparingLong(Entry::units).thenComparing(Entry::productId, Comparator.reverseOrder());
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<Key, Ranking> rankings = new ConcurrentHashMap<>();
+    private final AtomicLong sales = new AtomicLong();
+    private final long refreshNanos;
+
+    public BestsellerRanking(@Value("${products.bestsellers.refresh-interval:1m}") Duration refreshInterval) {
+        this.refreshNanos = refreshInterval.toNanos();
+    }
+
+    public void record(String productId, String categoryId, long units, LocalDate day) {
+        counters.computeIfAbsent(productId, id -> new Counter()).add(categoryId, day.toEpochDay(), units);
+        sales.incrementAndGet();
+    }
+
+    /** Takes back units recorded for {@code day}, as when the order they came from is cancelled. */
+    public void subtract(String productId, long units, LocalDate day) {
+        Counter counter = counters.get(productId);
+        if (counter != null) {
+            counter.subtract(day.toEpochDay(), units);
+            sales.incrementAndGet();
+        }
+    }
+
+    public void clear() {
+        counters.clear();
+        rankings.clear();
+        sales.incrementAndGet();
+    }
+
+    /**
+     * Product IDs with the most units sold in the {@code days} days up to and including
+     * {@code today}, best first. {@code categoryId} may be null for the whole catalog.
+     */
+    public List<String> top(String categoryId, int days, int limit, LocalDate today) {
+        if (days < 1 || days > MAX_WINDOW_DAYS) {
+            throw new IllegalArgumentException("Window must be between 1 and " + MAX_WINDOW_DAYS + " days");
+        }
+        long salesNow = sales.get();
+        long todayEpoch = today.toEpochDay();
+        long now = System.nanoTime();
+        Key key = new Key(categoryId, days);
+        Ranking ranking = rankings.get(key);
+        if (ranking == null || ranking.day != todayEpoch
+                || (ranking.sales != salesNow && now - ranking.computedAt >= refreshNanos)) {
+            ranking = new Ranking(salesNow, todayEpoch, now, rank(categoryId, days, todayEpoch));
+            rankings.put(key, ranking);
+        }
+        List<String> productIds = ranking.productIds;
+        return productIds.subList(0, Math.min(limit, productIds.size()));
+    }
+
+    /** Units of the product sold in the {@code days} days up to and including {@code today}. */
+    public long unitsSold(String productId, int days, LocalDate today) {
+        Counter counter = counters.get(productId);
+        return counter != null ? counter.sum(today.toEpochDay(), days) : 0;
+    }
+
+    private List<String> rank(String categoryId, int days, long today) {
+        PriorityQueue<Entry> heap = new PriorityQueue<>(MAX_LIMIT + 1, BY_UNITS);
+        counters.forEach((productId, counter) -> {
+            if (categoryId != null && !categoryId.equals(counter.categoryId)) {
+                return;
+            }
+            long units = counter.sum(today, days);
+            if (units > 0) {
+                heap.offer(new Entry(productId, units));
+                if (heap.size() > MAX_LIMIT) {
+                    heap.poll();
+                }
+            }
+        });
+
+        List<String> ranked = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            ranked.add(heap.poll().productId());
+        }
+        Collections.reverse(ranked);
+        return List.copyOf(ranked);
+    }
+
+    private record Key(String categoryId, int days) {
+    }
+
+    private record Entry(String productId, long units) {
+    }
+
+    private record Ranking(long sales, long day, long computedAt, List<String> productIds) {
+    }
+
+    // Slot i holds the units sold on the epoch day stored in days[i]; a slot whose day is not
+    // the one being asked for belongs to an older lap of the ring and counts as zero.
+    private static final class Counter {
+        private final long[] units = new long[MAX_WINDOW_DAYS];
+        private final long[] days = new long[MAX_WINDOW_DAYS];
+        private volatile String categoryId;
+
+        synchronized void add(String categoryId, long day, long amount) {
+            if (categoryId != null && !Objects.equals(this.categoryId, categoryId)) {
+                this.categoryId = categoryId;
+            }
+            int slot = (int) Math.floorMod(day, (long) MAX_WINDOW_DAYS);
+            if (days[slot] != day) {
+                if (days[slot] > day) {
+                    return;
+                }
+                days[slot] = day;
+                units[slot] = 0;
+            }
+            units[slot] += amount;
+        }
+
+        // Only units still in the ring can be taken back; a day that has left it counts as
+        // zero already.
+        synchronized void subtract(long day, long amount) {
+            int slot = (int) Math.floorMod(day, (long) MAX_WINDOW_DAYS);
+            if (days[slot] == day) {
+                units[slot] = Math.max(0, units[slot] - amount);
+            }
+        }
+
+        synchronized long sum(long today, int window) {
+            long total = 0;
+            for (long day = today - window + 1; day <= today; day++) {
+                int slot = (int) Math.floorMod(day, (long) MAX_WINDOW_DAYS);
+                if (days[slot] == day) {
+                    total += units[slot];
+                }
+            }
+            return total;
+        }
+    }
+}
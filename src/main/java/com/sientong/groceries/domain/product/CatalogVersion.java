@@ -0,0 +1,29 @@
+package com.sientong.groceries.domain.product;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Catalog-wide version number, kept by the database and bumped on every product or category
+ * write that can change a listing. Listing ETags are derived from it, so a conditional
+ * request is answered with a single-row read instead of the listing query, and every
+ * instance issues and honours the same ETags.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogVersion {
+    private final CatalogVersionRepository catalogVersionRepository;
+
+    /** Weak ETag for responses built from the catalog as of the current version. */
+    public Mono<String> etag() {
+        return catalogVersionRepository.findCurrent()
+                .map(CatalogVersion::etag);
+    }
+
+    /** Weak ETag for responses built from the catalog as of the given version. */
+    public static String etag(long version) {
+        return "W/\"" + version + "\"";
+    }
+}
@@ -0,0 +1,7 @@
+package com.sientong.groceries.domain.product;
+
+import reactor.core.publisher.Mono;
+
+public interface CatalogVersionRepository {
+    Mono<Long> findCurrent();
+}
@@ -0,0 +1,193 @@
+package com.sientong.groceries.domain.product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * "Frequently bought together" index built from order baskets. Products are numbered densely
+ * and every product keeps a sparse row of co-purchase counts in an open-addressing table of
+ * primitive arrays, so millions of order lines fit without boxing. Counts only ever grow, which
+ * lets the top {@link #MAX_NEIGHBOURS} of each product be maintained exactly on every update
+ * instead of being re-sorted. Reads only touch an immutable per-product array pair and never
+ * take the write lock.
+ */
+@Component
+public class CoPurchaseIndex {
+    public static final int MAX_NEIGHBOURS = 20;
+    // Pairs grow quadratically with basket size; beyond this a basket says little about
+    // which products belong together anyway.
+    static final int MAX_BASKET_SIZE = 50;
+
+    private final Map<String, Integer> numbers = new ConcurrentHashMap<>();
+    private final Map<Integer, Neighbours> neighbours = new ConcurrentHashMap<>();
+    private volatile String[] productIds = new String[1024];
+    private Counts[] counts = new Counts[1024];
+    private int size;
+
+    public synchronized void record(Collection<String> basket) {
+        Set<String> distinct = new LinkedHashSet<>(basket);
+        int[] products = distinct.stream().limit(MAX_BASKET_SIZE).mapToInt(this::number).toArray();
+        for (int i = 0; i < products.length; i++) {
+            for (int j = i + 1; j < products.length; j++) {
+                int count = counts[products[i]].increment(products[j]);
+                counts[products[j]].increment(products[i]);
+                offer(products[i], products[j], count);
+                offer(products[j], products[i], count);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        numbers.clear();
+        neighbours.clear();
+        productIds = new String[1024];
+        counts = new Counts[1024];
+        size = 0;
+    }
+
+    /** Products most often bought together with {@code productId}, most frequent first. */
+    public List<String> neighbours(String productId, int limit) {
+        Integer number = numbers.get(productId);
+        Neighbours top = number != null ? neighbours.get(number) : null;
+        if (top == null) {
+            return List.of();
+        }
+        String[] ids = productIds;
+        int n = Math.min(limit, top.products.length);
+        List<String> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(ids[top.products[i]]);
+        }
+        return result;
+    }
+
+    private int number(String productId) {
+        Integer existing = numbers.get(productId);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == counts.length) {
+            counts = Arrays.copyOf(counts, size * 2);
+            productIds = Arrays.copyOf(productIds, size * 2);
+        }
+        int number = size++;
+        counts[number] = new Counts();
+        // Published through the volatile array before any Neighbours can refer to it.
+        String[] ids = productIds;
+        ids[number] = productId;
+        productIds = ids;
+        numbers.put(productId, number);
+        return number;
+    }
+
+    private void offer(int product, int neighbour, int count) {
+        Neighbours current = neighbours.get(product);
+        Neighbours updated = current == null
+                ? new Neighbours(new int[] {neighbour}, new int[] {count})
+                : current.offer(neighbour, count);
+        if (updated != current) {
+            neighbours.put(product, updated);
+        }
+    }
+
+    // Sorted by count, highest first. Replaced on change, never mutated once published.
+    private record Neighbours(int[] products, int[] counts) {
+        Neighbours offer(int product, int count) {
+            int position = -1;
+            for (int i = 0; i < products.length; i++) {
+                if (products[i] == product) {
+                    position = i;
+                    break;
+                }
+            }
+
+            int[] newProducts;
+            int[] newCounts;
+            if (position >= 0) {
+                newProducts = products.clone();
+                newCounts = counts.clone();
+            } else if (products.length < MAX_NEIGHBOURS) {
+                newProducts = Arrays.copyOf(products, products.length + 1);
+                newCounts = Arrays.copyOf(counts, counts.length + 1);
+                position = products.length;
+            } else if (count > counts[counts.length - 1]) {
+                newProducts = products.clone();
+                newCounts = counts.clone();
+                position = products.length - 1;
+            } else {
+                return this;
+            }
+
+            while (position > 0 && newCounts[position - 1] < count) {
+                newProducts[position] = newProducts[position - 1];
+                newCounts[position] = newCounts[position - 1];
+                position--;
+            }
+            newProducts[position] = product;
+            newCounts[position] = count;
+            return new Neighbours(newProducts, newCounts);
+        }
+    }
+
+    // Open-addressing map from product number to co-purchase count with linear probing.
+    private static final class Counts {
+        private static final int EMPTY = -1;
+
+        private int[] keys = emptyKeys(4);
+        private int[] values = new int[4];
+        private int size;
+
+        int increment(int key) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+            return ++values[slot];
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = emptyKeys(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private static int[] emptyKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
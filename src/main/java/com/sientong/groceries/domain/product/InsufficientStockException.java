@@ -0,0 +1,19 @@
+package com.sientong.groceries.domain.product;
+
+import java.util.Set;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class InsufficientStockException extends ResponseStatusException {
+    private final Set<String> productIds;
+
+    public InsufficientStockException(Set<String> productIds) {
+        super(HttpStatus.CONFLICT, String.format("Insufficient stock for products %s", productIds));
+        this.productIds = Set.copyOf(productIds);
+    }
+
+    public Set<String> getProductIds() {
+        return productIds;
+    }
+}
@@ -0,0 +1,46 @@
+package com.sientong.groceries.domain.product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import lombok.Value;
+
+/**
+ * Keyset position in the catalog ordering {@code (name, id)}. Clients only ever see the
+ * encoded form, so the ordering key can change without breaking the API contract.
+ */
+@Value
+public class ProductCursor {
+    private static final char SEPARATOR = '\u0000';
+
+    String name;
+    String id;
+
+    public static ProductCursor after(ProductSummary product) {
+        return new ProductCursor(product.getName(), product.getId());
+    }
+
+    public String encode() {
+        String raw = name + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("Cursor cannot be null or empty");
+        }
+
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + token, e);
+        }
+
+        int separator = raw.lastIndexOf(SEPARATOR);
+        if (separator <= 0 || separator == raw.length() - 1) {
+            throw new IllegalArgumentException("Malformed cursor: " + token);
+        }
+        return new ProductCursor(raw.substring(0, separator), raw.substring(separator + 1));
+    }
+}
@@ -0,0 +1,25 @@
+package com.sientong.groceries.domain.product;
+
+import lombok.Value;
+
+/**
+ * One line of a bulk import: either a validated product or the reason it was rejected.
+ */
+@Value
+public class ProductImportLine {
+    long line;
+    Product product;
+    String error;
+
+    public static ProductImportLine valid(long line, Product product) {
+        return new ProductImportLine(line, product, null);
+    }
+
+    public static ProductImportLine invalid(long line, String error) {
+        return new ProductImportLine(line, null, error);
+    }
+
+    public boolean isValid() {
+        return product != null;
+    }
+}
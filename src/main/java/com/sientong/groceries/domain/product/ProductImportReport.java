@@ -0,0 +1,21 @@
+package com.sientong.groceries.domain.product;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class ProductImportReport {
+    long batch;
+    int imported;
+    int failed;
+    List<LineError> errors;
+
+    @Value
+    public static class LineError {
+        long line;
+        String message;
+    }
+}
@@ -0,0 +1,19 @@
+package com.sientong.groceries.domain.product;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A single page of the product catalog together with the total number of matching products.
+ * Pages read in catalog order also carry the opaque cursor that continues the listing.
+ */
+@Value
+@Builder
+public class ProductPage {
+    List<ProductSummary> content;
+    long totalElements;
+    boolean last;
+    String nextCursor;
+}
@@ -1,5 +1,9 @@
 package com.sientong.groceries.domain.product;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
 import com.sientong.groceries.domain.common.Quantity;
 
 import reactor.core.publisher.Flux;
@@ -7,13 +11,27 @@ import reactor.core.publisher.Mono;
 
 public interface ProductRepository {
     Mono<Product> findById(String id);
+    Mono<Map<String, Product>> findAllByIds(Collection<String> ids);
     Flux<Product> findAll();
     Flux<Product> findByCategory(String categoryId);
+    Flux<ProductSummary> findSummariesByCategory(String categoryId);
+    Flux<ProductSummary> findPage(String categoryId, int limit, long offset);
+    Flux<ProductSummary> findPageAfter(String categoryId, ProductCursor cursor, int limit);
+    Mono<Long> countListed(String categoryId);
+    Flux<ProductSummary> search(String query, String categoryId, int limit, long offset);
+    Mono<Long> countSearch(String query, String categoryId);
+    Flux<Product> searchSimilar(String query, double threshold, int limit);
+    Flux<Product> streamAll(LocalDateTime updatedSince);
     Mono<Product> save(Product product);
+    Mono<Long> upsertAll(Collection<Product> products);
     Mono<Void> deleteById(String id);
     Flux<Product> findAvailable();
     Flux<Product> findAvailableByCategory(String categoryId);
     Mono<Product> updateStock(String id, Quantity quantity);
+    Mono<Product> updateReorderThreshold(String id, int reorderThreshold);
+    Mono<Void> decrementStock(String holderId, Map<String, Integer> quantities);
+    Mono<Void> incrementStock(Map<String, Integer> quantities);
+    Mono<Product> shardStock(String id, int shards);
     Flux<Product> findLowStockProducts();
     Flux<Product> findOutOfStockProducts();
 }
@@ -1,5 +1,9 @@
 package com.sientong.groceries.domain.product;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
 import com.sientong.groceries.domain.common.Quantity;
 
 import reactor.core.publisher.Flux;
@@ -7,10 +11,23 @@ import reactor.core.publisher.Mono;
 
 public interface ProductService {
     Mono<Product> findById(String id);
+    Mono<Map<String, Product>> findAllByIds(Collection<String> ids);
     Flux<Product> findAll();
     Flux<Product> findByCategory(String categoryId);
+    Flux<ProductSummary> findSummariesByCategory(String categoryId);
+    Mono<ProductPage> findPage(String categoryId, int page, int size);
+    Mono<ProductPage> findPageAfter(String categoryId, String cursor, int size);
+    Mono<ProductPage> search(String query, String categoryId, int page, int size);
+    Flux<Product> search(String query, double similarityThreshold, int limit);
+    Flux<ProductSuggestion> suggest(String prefix, int limit);
+    Flux<Product> findBestsellers(String categoryId, int days, int limit);
+    Flux<Product> findBoughtTogether(String productId, int limit);
+    Flux<Product> export(LocalDateTime updatedSince);
+    Flux<ProductImportReport> importProducts(Flux<ProductImportLine> lines);
     Mono<Product> createProduct(Product product);
     Mono<Product> updateProduct(String id, Product product);
     Mono<Void> deleteProduct(String id);
     Mono<Product> updateStock(String id, Quantity quantity);
+    Mono<Product> shardStock(String id, int shards);
+    Mono<Product> updateReorderThreshold(String id, int reorderThreshold);
 }
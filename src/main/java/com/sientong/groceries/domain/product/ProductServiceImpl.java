@@ -1,78 +1,272 @@
 package com.sientong.groceries.domain.product;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.sientong.groceries.domain.common.Quantity;
-import com.sientong.groceries.infrastructure.persistence.entity.ProductEntity;
-import com.sientong.groceries.infrastructure.persistence.repository.ReactiveProductRepository;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ProductServiceImpl implements ProductService {
-    private final ReactiveProductRepository productRepository;
+    // Below this, trigram matches are mostly noise and the index scan approaches a full one.
+    static final double MIN_SIMILARITY_THRESHOLD = 0.3;
+    static final double DEFAULT_SIMILARITY_THRESHOLD = 0.5;
+    static final int EXPORT_BATCH_SIZE = 500;
+    static final int IMPORT_BATCH_SIZE = 500;
+
+    // The only way to the products table: caching, cache invalidation and the stock paths
+    // (hot SKU counters, shards, alerts) all live behind it.
+    private final ProductRepository productRepository;
+    private final ProductSuggestionIndex suggestionIndex;
+    private final BestsellerRanking bestsellerRanking;
+    private final CoPurchaseIndex coPurchaseIndex;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSuggestionIndex() {
+        refreshSuggestionIndex().subscribe();
+    }
+
+    // Picks up products written through other instances, which this one's index never saw.
+    @Scheduled(fixedDelayString = "${products.suggestions.refresh-interval:PT5M}")
+    public Mono<Void> refreshSuggestionIndex() {
+        return Mono.defer(() -> {
+                    ProductSuggestionIndex.Rebuild rebuild = suggestionIndex.rebuild();
+                    return productRepository.findAll()
+                            .doOnNext(rebuild::add)
+                            .then(Mono.fromCallable(rebuild::install));
+                })
+                .doOnNext(installed -> {
+                    if (installed) {
+                        log.info("Loaded {} products into suggestion index", suggestionIndex.size());
+                    }
+                })
+                .onErrorResume(ex -> {
+                    log.error("Error loading product suggestion index", ex);
+                    return Mono.empty();
+                })
+                .then();
+    }
 
     @Override
     public Mono<Product> findById(String id) {
-        return productRepository.findById(id)
-                .map(ProductEntity::toDomain);
+        return productRepository.findById(id);
+    }
+
+    @Override
+    public Mono<Map<String, Product>> findAllByIds(Collection<String> ids) {
+        return productRepository.findAllByIds(ids);
     }
 
     @Override
     public Flux<Product> findAll() {
-        return productRepository.findAll()
-                .map(ProductEntity::toDomain);
+        return productRepository.findAll();
     }
 
     @Override
     public Flux<Product> findByCategory(String categoryId) {
-        return productRepository.findByCategoryId(categoryId)
-                .map(ProductEntity::toDomain);
+        return productRepository.findByCategory(categoryId);
+    }
+
+    @Override
+    public Flux<ProductSummary> findSummariesByCategory(String categoryId) {
+        return productRepository.findSummariesByCategory(categoryId);
+    }
+
+    @Override
+    public Mono<ProductPage> findPage(String categoryId, int page, int size) {
+        long offset = (long) page * size;
+        return toPage(productRepository.findPage(categoryId, size + 1, offset),
+                productRepository.countListed(categoryId), size, true);
+    }
+
+    @Override
+    public Mono<ProductPage> findPageAfter(String categoryId, String cursor, int size) {
+        return toPage(productRepository.findPageAfter(categoryId, ProductCursor.decode(cursor), size + 1),
+                productRepository.countListed(categoryId), size, true);
+    }
+
+    @Override
+    public Mono<ProductPage> search(String query, String categoryId, int page, int size) {
+        long offset = (long) page * size;
+        return toPage(productRepository.search(query, categoryId, size + 1, offset),
+                productRepository.countSearch(query, categoryId), size, false)
+                .flatMap(result -> result.getTotalElements() == 0 && page == 0
+                        ? searchSimilarPage(query, categoryId, size)
+                        : Mono.just(result));
+    }
+
+    @Override
+    public Flux<Product> search(String query, double similarityThreshold, int limit) {
+        double threshold = Math.max(similarityThreshold, MIN_SIMILARITY_THRESHOLD);
+        return productRepository.searchSimilar(query, threshold, limit);
     }
 
     @Override
     public Mono<Product> updateStock(String id, Quantity quantity) {
-        return productRepository.findById(id)
-                .map(entity -> {
-                    entity.setQuantity(quantity.getValue());
-                    entity.setUnit(quantity.getUnit());
-                    return entity;
-                })
-                .flatMap(productRepository::save)
-                .map(ProductEntity::toDomain);
+        return productRepository.updateStock(id, quantity);
+    }
+
+    @Override
+    public Mono<Product> shardStock(String id, int shards) {
+        return productRepository.shardStock(id, shards);
+    }
+
+    @Override
+    public Mono<Product> updateReorderThreshold(String id, int reorderThreshold) {
+        return productRepository.updateReorderThreshold(id, reorderThreshold);
     }
 
     @Override
     public Mono<Product> createProduct(Product product) {
-        ProductEntity entity = ProductEntity.fromDomain(product);
-        return productRepository.save(entity)
-                .map(ProductEntity::toDomain);
+        return productRepository.save(withId(product.getId() != null ? product.getId() : UUID.randomUUID().toString(),
+                        product, LocalDateTime.now()))
+                .doOnNext(suggestionIndex::index);
     }
 
     @Override
     public Mono<Product> updateProduct(String id, Product product) {
         return productRepository.findById(id)
-                .map(entity -> {
-                    entity.setName(product.getName());
-                    entity.setDescription(product.getDescription());
-                    entity.setPrice(product.getPrice().getAmount());
-                    entity.setCurrency(product.getPrice().getCurrency());
-                    entity.setCategoryId(product.getCategory().getId());
-                    entity.setCategoryName(product.getCategory().getName());
-                    entity.setQuantity(product.getQuantity().getValue());
-                    entity.setUnit(product.getQuantity().getUnit());
-                    entity.setImageUrl(product.getImageUrl());
-                    return entity;
-                })
-                .flatMap(productRepository::save)
-                .map(ProductEntity::toDomain);
+                .flatMap(existing -> productRepository.save(withId(id, product, existing.getCreatedAt())))
+                .doOnNext(suggestionIndex::index);
+    }
+
+    private static Product withId(String id, Product product, LocalDateTime createdAt) {
+        return new Product(id, product.getName(), product.getDescription(), product.getPrice(), product.getCategory(),
+                product.getQuantity(), product.getImageUrl(), createdAt, LocalDateTime.now());
     }
 
     @Override
     public Mono<Void> deleteProduct(String id) {
-        return productRepository.deleteById(id);
+        return productRepository.deleteById(id)
+                .doOnSuccess(unused -> suggestionIndex.remove(id));
+    }
+
+    // Misspelled queries ("bananna") match nothing in the full-text index, so the first page
+    // falls back to the best trigram matches on product names instead of coming back empty.
+    private Mono<ProductPage> searchSimilarPage(String query, String categoryId, int size) {
+        return search(query, DEFAULT_SIMILARITY_THRESHOLD, size)
+                .filter(product -> categoryId == null || categoryId.equals(product.getCategory().getId()))
+                .map(ProductSummary::fromProduct)
+                .collectList()
+                .map(products -> ProductPage.builder()
+                        .content(products)
+                        .totalElements(products.size())
+                        .last(true)
+                        .build());
+    }
+
+    @Override
+    public Flux<ProductSuggestion> suggest(String prefix, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(suggestionIndex.suggest(prefix, limit)));
+    }
+
+    @Override
+    public Flux<Product> findBestsellers(String categoryId, int days, int limit) {
+        return Flux.defer(() -> findInOrder(bestsellerRanking.top(categoryId, days, limit, LocalDate.now())));
+    }
+
+    @Override
+    public Flux<Product> findBoughtTogether(String productId, int limit) {
+        return Flux.defer(() -> findInOrder(coPurchaseIndex.neighbours(productId, limit)));
+    }
+
+    // Products that no longer exist are skipped rather than failing the whole list.
+    private Flux<Product> findInOrder(List<String> productIds) {
+        if (productIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return findAllByIds(productIds)
+                .flatMapIterable(products -> productIds.stream()
+                        .map(products::get)
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+
+    @Override
+    public Flux<Product> export(LocalDateTime updatedSince) {
+        return productRepository.streamAll(updatedSince)
+                .limitRate(EXPORT_BATCH_SIZE);
+    }
+
+    @Override
+    public Flux<ProductImportReport> importProducts(Flux<ProductImportLine> lines) {
+        return lines.buffer(IMPORT_BATCH_SIZE)
+                .index()
+                .concatMap(batch -> importBatch(batch.getT1() + 1, batch.getT2()));
+    }
+
+    // Each batch is written with a single multi-row upsert. A failed batch is reported and
+    // skipped so the rest of the file still gets imported.
+    private Mono<ProductImportReport> importBatch(long batch, List<ProductImportLine> lines) {
+        List<ProductImportReport.LineError> errors = new ArrayList<>();
+        // The same ID twice in one statement would make ON CONFLICT fail the whole batch,
+        // so the last occurrence in the file wins.
+        Map<String, Product> products = new LinkedHashMap<>();
+        for (ProductImportLine line : lines) {
+            if (line.isValid()) {
+                products.put(line.getProduct().getId(), line.getProduct());
+            } else {
+                errors.add(new ProductImportReport.LineError(line.getLine(), line.getError()));
+            }
+        }
+
+        return productRepository.upsertAll(products.values())
+                .doOnNext(unused -> products.values().forEach(suggestionIndex::index))
+                .map(unused -> ProductImportReport.builder()
+                        .batch(batch)
+                        .imported(products.size())
+                        .failed(errors.size())
+                        .errors(errors)
+                        .build())
+                .onErrorResume(ex -> {
+                    log.error("Error importing product batch {}", batch, ex);
+                    List<ProductImportReport.LineError> failures = new ArrayList<>(errors);
+                    lines.stream()
+                            .filter(ProductImportLine::isValid)
+                            .map(line -> new ProductImportReport.LineError(line.getLine(), "Batch failed: " + ex.getMessage()))
+                            .forEach(failures::add);
+                    return Mono.just(ProductImportReport.builder()
+                            .batch(batch)
+                            .imported(0)
+                            .failed(lines.size())
+                            .errors(failures)
+                            .build());
+                });
+    }
+
+    // Rows are fetched with one extra element so the presence of a next page is known
+    // without a second query; the extra row is never returned to the caller. Only listings
+    // in (name, id) order can be continued with a cursor.
+    private Mono<ProductPage> toPage(Flux<ProductSummary> rows, Mono<Long> total, int size, boolean keyset) {
+        return Mono.zip(rows.collectList(), total)
+                .map(tuple -> {
+                    List<ProductSummary> products = tuple.getT1();
+                    boolean hasNext = products.size() > size;
+                    List<ProductSummary> content = hasNext ? products.subList(0, size) : products;
+                    return ProductPage.builder()
+                            .content(content)
+                            .totalElements(tuple.getT2())
+                            .last(!hasNext)
+                            .nextCursor(keyset && hasNext ? ProductCursor.after(content.get(size - 1)).encode() : null)
+                            .build();
+                });
     }
 }
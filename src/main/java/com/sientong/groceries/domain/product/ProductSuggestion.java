@@ -0,0 +1,15 @@
+package com.sientong.groceries.domain.product;
+
+import lombok.Value;
+
+@Value
+public class ProductSuggestion {
+    public enum Type {
+        PRODUCT,
+        CATEGORY
+    }
+
+    Type type;
+    String id;
+    String text;
+}
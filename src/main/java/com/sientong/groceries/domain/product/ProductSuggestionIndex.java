@@ -0,0 +1,312 @@
+package com.sientong.groceries.domain.product;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory prefix index over product and category names used for search-box autocomplete.
+ * Every word of a name starts a key running to the end of the name, so "ban" suggests both
+ * "Bananas" and "Organic Bananas" and "organic ban" still narrows to the latter. Keys live in
+ * a trie whose nodes keep their children in sorted arrays, so keys sharing a prefix share its
+ * nodes. Matches are ranked before they are cut to the requested number: categories first,
+ * then products by units sold over the {@link BestsellerRanking} window, then by name.
+ * <p>
+ * Lookups take no lock: writers replace a node's children or suggestions as a whole, under
+ * the index's lock. Writes only touch the keys of a single product and, when it is the first
+ * or last of its category, those of the category. Writes made through other instances reach
+ * this one through {@link #rebuild}, which loads a fresh index beside the live one and swaps
+ * it in, replaying the local writes made in the meantime.
+ */
+@Component
+public class ProductSuggestionIndex {
+    private final BestsellerRanking bestsellerRanking;
+    private volatile State current = new State();
+    private Rebuild rebuilding;
+
+    public ProductSuggestionIndex(BestsellerRanking bestsellerRanking) {
+        this.bestsellerRanking = bestsellerRanking;
+    }
+
+    public synchronized void index(Product product) {
+        current.index(product);
+        if (rebuilding != null) {
+            rebuilding.written.add(product.getId());
+            rebuilding.state.index(product);
+        }
+    }
+
+    public synchronized void remove(String productId) {
+        current.remove(productId);
+        if (rebuilding != null) {
+            rebuilding.written.add(productId);
+            rebuilding.state.remove(productId);
+        }
+    }
+
+    public synchronized void clear() {
+        current = new State();
+        rebuilding = null;
+    }
+
+    /**
+     * Starts loading a fresh index. Products passed to {@link Rebuild#add} go into it unless
+     * they were indexed or removed locally since, and {@link Rebuild#install} swaps it in; a
+     * rebuild started later supersedes this one, which then installs nothing.
+     */
+    public synchronized Rebuild rebuild() {
+        rebuilding = new Rebuild();
+        return rebuilding;
+    }
+
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        Node node = current.root.find(normalized);
+        if (node == null) {
+            return List.of();
+        }
+
+        Set<ProductSuggestion> matches = new LinkedHashSet<>();
+        node.collect(matches);
+        Map<ProductSuggestion, Long> unitsSold = new HashMap<>();
+        LocalDate today = LocalDate.now();
+        matches.forEach(match -> unitsSold.put(match, match.getType() == ProductSuggestion.Type.PRODUCT
+                ? bestsellerRanking.unitsSold(match.getId(), BestsellerRanking.MAX_WINDOW_DAYS, today)
+                : 0L));
+        Comparator<ProductSuggestion> best = Comparator
+                .comparing((ProductSuggestion match) -> match.getType() != ProductSuggestion.Type.CATEGORY)
+                .thenComparing(unitsSold::get, Comparator.reverseOrder())
+                .thenComparing(ProductSuggestion::getText)
+                .thenComparing(ProductSuggestion::getId);
+
+        // A bounded heap of the best so far, worst on top, as BestsellerRanking ranks.
+        PriorityQueue<ProductSuggestion> heap = new PriorityQueue<>(limit + 1, best.reversed());
+        for (ProductSuggestion match : matches) {
+            heap.offer(match);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<ProductSuggestion> ranked = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            ranked.add(heap.poll());
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    public synchronized int size() {
+        return current.keysByProduct.size();
+    }
+
+    public final class Rebuild {
+        private final State state = new State();
+        private final Set<String> written = new HashSet<>();
+
+        private Rebuild() {
+        }
+
+        public void add(Product product) {
+            synchronized (ProductSuggestionIndex.this) {
+                if (rebuilding == this && !written.contains(product.getId())) {
+                    state.index(product);
+                }
+            }
+        }
+
+        /** Swaps the loaded index in; returns false if a later rebuild superseded this one. */
+        public boolean install() {
+            synchronized (ProductSuggestionIndex.this) {
+                if (rebuilding != this) {
+                    return false;
+                }
+                current = state;
+                rebuilding = null;
+                return true;
+            }
+        }
+    }
+
+    // One complete index; only touched under the index's lock, apart from reads of root.
+    private static final class State {
+        private final Node root = new Node();
+        private final Map<String, Indexed> keysByProduct = new HashMap<>();
+        private final Map<String, Integer> productsPerCategory = new HashMap<>();
+        private final Map<String, Indexed> keysByCategory = new HashMap<>();
+
+        void index(Product product) {
+            remove(product.getId());
+
+            ProductSuggestion suggestion = new ProductSuggestion(
+                    ProductSuggestion.Type.PRODUCT, product.getId(), product.getName());
+            Category category = product.getCategory();
+            String categoryId = category.getId() != null && category.getName() != null ? category.getId() : null;
+            Indexed indexed = new Indexed(suggestion, keysFor(product.getName()), categoryId);
+            indexed.keys().forEach(key -> root.add(key, suggestion));
+            keysByProduct.put(product.getId(), indexed);
+
+            if (categoryId != null && productsPerCategory.merge(categoryId, 1, Integer::sum) == 1) {
+                ProductSuggestion categorySuggestion = new ProductSuggestion(
+                        ProductSuggestion.Type.CATEGORY, categoryId, category.getName());
+                Indexed categoryIndexed = new Indexed(categorySuggestion, keysFor(category.getName()), null);
+                categoryIndexed.keys().forEach(key -> root.add(key, categorySuggestion));
+                keysByCategory.put(categoryId, categoryIndexed);
+            }
+        }
+
+        void remove(String productId) {
+            Indexed indexed = keysByProduct.remove(productId);
+            if (indexed == null) {
+                return;
+            }
+            indexed.keys().forEach(key -> root.remove(key, indexed.suggestion()));
+
+            String categoryId = indexed.categoryId();
+            if (categoryId != null && productsPerCategory.merge(categoryId, -1, Integer::sum) <= 0) {
+                productsPerCategory.remove(categoryId);
+                Indexed categoryIndexed = keysByCategory.remove(categoryId);
+                if (categoryIndexed != null) {
+                    categoryIndexed.keys().forEach(key -> root.remove(key, categoryIndexed.suggestion()));
+                }
+            }
+        }
+    }
+
+    private record Indexed(ProductSuggestion suggestion, List<String> keys, String categoryId) {
+    }
+
+    private record Children(char[] labels, Node[] nodes) {
+        static final Children NONE = new Children(new char[0], new Node[0]);
+
+        Node get(char label) {
+            int at = Arrays.binarySearch(labels, label);
+            return at >= 0 ? nodes[at] : null;
+        }
+
+        Children with(char label, Node node) {
+            int at = -Arrays.binarySearch(labels, label) - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newNodes = new Node[nodes.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(nodes, 0, newNodes, 0, at);
+            newLabels[at] = label;
+            newNodes[at] = node;
+            System.arraycopy(labels, at, newLabels, at + 1, labels.length - at);
+            System.arraycopy(nodes, at, newNodes, at + 1, nodes.length - at);
+            return new Children(newLabels, newNodes);
+        }
+
+        Children without(char label) {
+            int at = Arrays.binarySearch(labels, label);
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newNodes = new Node[nodes.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(nodes, 0, newNodes, 0, at);
+            System.arraycopy(labels, at + 1, newLabels, at, labels.length - at - 1);
+            System.arraycopy(nodes, at + 1, newNodes, at, nodes.length - at - 1);
+            return new Children(newLabels, newNodes);
+        }
+    }
+
+    // Readers see either the old or the new children and suggestions of a node, never a mix.
+    private static final class Node {
+        private volatile Children children = Children.NONE;
+        private volatile List<ProductSuggestion> suggestions = List.of();
+
+        Node find(String key) {
+            Node node = this;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            return node;
+        }
+
+        void add(String key, ProductSuggestion suggestion) {
+            Node node = this;
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children = node.children.with(key.charAt(i), child);
+                }
+                node = child;
+            }
+            List<ProductSuggestion> updated = new ArrayList<>(node.suggestions);
+            updated.add(suggestion);
+            node.suggestions = List.copyOf(updated);
+        }
+
+        // Nodes left with neither suggestions nor children are unlinked on the way back up.
+        void remove(String key, ProductSuggestion suggestion) {
+            Deque<Node> path = new ArrayDeque<>();
+            Node node = this;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                path.push(node);
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) {
+                return;
+            }
+            List<ProductSuggestion> updated = new ArrayList<>(node.suggestions);
+            updated.remove(suggestion);
+            node.suggestions = List.copyOf(updated);
+            for (int i = key.length() - 1; i >= 0 && node.isEmpty(); i--) {
+                Node parent = path.pop();
+                parent.children = parent.children.without(key.charAt(i));
+                node = parent;
+            }
+        }
+
+        void collect(Set<ProductSuggestion> into) {
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.push(this);
+            while (!pending.isEmpty()) {
+                Node node = pending.pop();
+                into.addAll(node.suggestions);
+                for (Node child : node.children.nodes()) {
+                    pending.push(child);
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return suggestions.isEmpty() && children.labels().length == 0;
+        }
+    }
+
+    private static List<String> keysFor(String name) {
+        List<String> keys = new ArrayList<>();
+        String normalized = normalize(name);
+        int start = 0;
+        while (start < normalized.length()) {
+            keys.add(normalized.substring(start));
+            int space = normalized.indexOf(' ', start);
+            if (space < 0) {
+                break;
+            }
+            start = space + 1;
+        }
+        return keys;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
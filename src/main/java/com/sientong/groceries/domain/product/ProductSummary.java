@@ -0,0 +1,31 @@
+package com.sientong.groceries.domain.product;
+
+import com.sientong.groceries.domain.common.Money;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Slim read model of a product for catalog listings, carrying only what a product tile needs.
+ */
+@Value
+@Builder
+public class ProductSummary {
+    String id;
+    String name;
+    Money price;
+    String unit;
+    String imageUrl;
+    boolean inStock;
+
+    public static ProductSummary fromProduct(Product product) {
+        return ProductSummary.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .price(product.getPrice())
+                .unit(product.getQuantity().getUnit())
+                .imageUrl(product.getImageUrl())
+                .inStock(product.getQuantity().getValue() > 0)
+                .build();
+    }
+}
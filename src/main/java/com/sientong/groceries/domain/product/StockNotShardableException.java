@@ -0,0 +1,7 @@
+package com.sientong.groceries.domain.product;
+
+public class StockNotShardableException extends RuntimeException {
+    public StockNotShardableException(String productId) {
+        super(String.format("Stock of product %s is counted in memory and cannot be sharded", productId));
+    }
+}
@@ -1,9 +1,11 @@
 package com.sientong.groceries.domain.user;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface UserRepository {
     Mono<User> save(User user);
     Mono<User> findById(String id);
     Mono<User> findByEmail(String email);
+    Flux<User> findByRole(UserRole role);
 }
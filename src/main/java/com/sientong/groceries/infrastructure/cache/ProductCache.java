@@ -0,0 +1,174 @@
+package com.sientong.groceries.infrastructure.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.product.Product;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read-through cache for product lookups by ID. Catalog data (name, price, category...)
+ * changes rarely and is kept for the configured TTL, while stock levels are cached
+ * separately with a much shorter TTL so availability shown to shoppers stays close to
+ * the database. Concurrent misses for the same ID share a single database load. Every read
+ * returns a fresh {@link Product} instance, so callers may mutate what they get back without
+ * affecting the cache or each other.
+ * <p>
+ * A load that was started before an {@link #invalidate} of its product may have read the row
+ * as it was before the write; what it read is returned to its callers but not cached.
+ */
+@Component
+public class ProductCache {
+    private static final int WRITE_STRIPES = 4096;
+
+    private final Cache<String, Product> products;
+    private final Cache<String, Integer> stock;
+    private final SingleFlight<String, Product> productLoads;
+    private final SingleFlight<String, Integer> stockLoads;
+    // Write generations, bumped by every invalidation, per stripe of product IDs so they take
+    // constant memory. A write to another product of the same stripe only costs a skipped put.
+    private final AtomicLongArray writes = new AtomicLongArray(WRITE_STRIPES);
+
+    public ProductCache(
+            @Value("${cache.products.maximum-size:10000}") long maximumSize,
+            @Value("${cache.products.ttl:10m}") Duration ttl,
+            @Value("${cache.products.stock-ttl:2s}") Duration stockTtl,
+            MeterRegistry meterRegistry) {
+        this.products = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.stock = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(stockTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, products, "products");
+        CaffeineCacheMetrics.monitor(meterRegistry, stock, "product.stock");
+        this.productLoads = new SingleFlight<>("products", meterRegistry);
+        this.stockLoads = new SingleFlight<>("product.stock", meterRegistry);
+    }
+
+    public Mono<Product> findById(String id, Supplier<Mono<Product>> productLoader, Supplier<Mono<Integer>> stockLoader) {
+        return Mono.defer(() -> lookup(id, productLoader, stockLoader));
+    }
+
+    private Mono<Product> lookup(String id, Supplier<Mono<Product>> productLoader, Supplier<Mono<Integer>> stockLoader) {
+        Product cached = products.getIfPresent(id);
+        if (cached == null) {
+            return productLoads.execute(id, () -> {
+                        long writesBefore = writes(id);
+                        return productLoader.get().doOnNext(product -> put(product, writesBefore));
+                    })
+                    .map(product -> withStock(product, product.getQuantity().getValue()));
+        }
+
+        Integer cachedStock = stock.getIfPresent(id);
+        if (cachedStock != null) {
+            return Mono.just(withStock(cached, cachedStock));
+        }
+        return stockLoads.execute(id, () -> {
+                    long writesBefore = writes(id);
+                    return stockLoader.get().doOnNext(quantity -> put(stock, id, quantity, writesBefore));
+                })
+                .map(quantity -> withStock(cached, quantity));
+    }
+
+    /**
+     * Resolves several products at once. IDs whose catalog data and stock are both cached are
+     * answered from memory; all others are passed to {@code loader} in a single call.
+     */
+    public Mono<Map<String, Product>> findAllByIds(Collection<String> ids, Function<List<String>, Flux<Product>> loader) {
+        return Mono.defer(() -> {
+            Map<String, Product> found = new LinkedHashMap<>();
+            List<String> missing = new ArrayList<>();
+            for (String id : new LinkedHashSet<>(ids)) {
+                Product cached = products.getIfPresent(id);
+                Integer cachedStock = stock.getIfPresent(id);
+                if (cached != null && cachedStock != null) {
+                    found.put(id, withStock(cached, cachedStock));
+                } else {
+                    missing.add(id);
+                }
+            }
+            if (missing.isEmpty()) {
+                return Mono.just(found);
+            }
+            Map<String, Long> writesBefore = new HashMap<>();
+            missing.forEach(id -> writesBefore.put(id, writes(id)));
+            return loader.apply(missing)
+                    .doOnNext(product -> put(product, writesBefore.getOrDefault(product.getId(), -1L)))
+                    .collectList()
+                    .map(loaded -> {
+                        loaded.forEach(product -> found.put(product.getId(), product));
+                        return found;
+                    });
+        });
+    }
+
+    public void invalidate(String id) {
+        writes.incrementAndGet(stripe(id));
+        products.invalidate(id);
+        stock.invalidate(id);
+    }
+
+    private void put(Product product, long writesBefore) {
+        if (product.getId() == null) {
+            return;
+        }
+        put(products, product.getId(), withStock(product, product.getQuantity().getValue()), writesBefore);
+        put(stock, product.getId(), product.getQuantity().getValue(), writesBefore);
+    }
+
+    // Checked again after the put, so an invalidation that lands in between still wins.
+    private <V> void put(Cache<String, V> cache, String id, V value, long writesBefore) {
+        if (writes(id) != writesBefore) {
+            return;
+        }
+        cache.put(id, value);
+        if (writes(id) != writesBefore) {
+            cache.asMap().remove(id, value);
+        }
+    }
+
+    private long writes(String id) {
+        return writes.get(stripe(id));
+    }
+
+    private static int stripe(String id) {
+        return Math.floorMod(id.hashCode(), WRITE_STRIPES);
+    }
+
+    private static Product withStock(Product product, int quantity) {
+        return new Product(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getPrice(),
+                product.getCategory(),
+                Quantity.of(quantity, product.getQuantity().getUnit()),
+                product.getImageUrl(),
+                product.getCreatedAt(),
+                product.getUpdatedAt());
+    }
+}
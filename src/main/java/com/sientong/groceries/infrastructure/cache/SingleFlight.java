@@ -0,0 +1,54 @@
+package com.sientong.groceries.infrastructure.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Coalesces concurrent loads of the same key into a single upstream call. Subscribers that
+ * arrive while a load is in flight share its outcome instead of starting their own; once
+ * the load terminates the key is released, so errors are never served to later callers.
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter joined;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.executed = Counter.builder("singleflight.calls")
+                .description("Loads that reached the backing store")
+                .tag("name", name)
+                .tag("outcome", "executed")
+                .register(meterRegistry);
+        this.joined = Counter.builder("singleflight.calls")
+                .description("Loads served by joining a call already in flight")
+                .tag("name", name)
+                .tag("outcome", "joined")
+                .register(meterRegistry);
+    }
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            // Released before the outcome reaches subscribers: one that reacts by loading the
+            // same key again, synchronously, must start a new call rather than join this one.
+            Mono<V> created = Mono.defer(call)
+                    .doOnTerminate(() -> inFlight.remove(key))
+                    .cache();
+            Mono<V> flight = inFlight.putIfAbsent(key, created);
+            if (flight == null) {
+                executed.increment();
+                return created;
+            }
+            joined.increment();
+            return flight;
+        });
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,307 @@
+package com.sientong.groceries.infrastructure.cart;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sientong.groceries.domain.cart.Cart;
+import com.sientong.groceries.domain.cart.CartItem;
+import com.sientong.groceries.domain.cart.CartRepository;
+import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.infrastructure.cache.SingleFlight;
+import com.sientong.groceries.infrastructure.persistence.adapter.CartRepositoryAdapter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Opt-in write-back cart storage ({@code cart.write-back.enabled}). Carts are read from and
+ * changed in a bounded in-memory store that evicts idle carts, and every change appends a
+ * snapshot of the cart to the cart_journal table instead of rewriting cart rows. A scheduled
+ * flush writes dirty carts to carts/cart_items in batches, keeping only the changes made
+ * since the last flush, and drops their snapshots; checkout and shutdown flush too.
+ * <p>
+ * A dirty cart is never evicted before it is flushed. After a crash, a cart is restored from
+ * its latest snapshot, so no change is lost; leftover snapshots are replayed at startup. The
+ * store is the authority for its carts, which means one instance must serve all of a user's
+ * cart requests, and carts/cart_items lag it by up to one flush interval.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "cart.write-back.enabled", havingValue = "true")
+public class WriteBackCartRepository implements CartRepository {
+    private final CartRepositoryAdapter delegate;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final Cache<String, Cart> carts;
+    private final Map<String, Dirty> dirty = new ConcurrentHashMap<>();
+    private final SingleFlight<String, Cart> loads;
+
+    private static final String JOURNAL_SQL = """
+            INSERT INTO cart_journal (user_id, cart) VALUES (:userId, CAST(:cart AS jsonb)) RETURNING id
+            """;
+
+    private static final String LATEST_SNAPSHOT_SQL = """
+            SELECT id, CAST(cart AS text) AS cart FROM cart_journal WHERE user_id = :userId ORDER BY id DESC LIMIT 1
+            """;
+
+    // Only snapshots up to the one that was flushed go, so changes made during the flush keep theirs.
+    private static final String DROP_SNAPSHOTS_SQL = """
+            DELETE FROM cart_journal j
+            USING unnest(CAST(:userIds AS varchar[]), CAST(:ids AS bigint[])) AS f(user_id, id)
+            WHERE j.user_id = f.user_id AND j.id <= f.id
+            """;
+
+    // Stored carts are never changed in place: readers get copies, and a change replaces the
+    // stored cart with a copy of the changed one.
+    private record Dirty(Cart cart, long journalId) {
+    }
+
+    record CartSnapshot(String id, String userId, LocalDateTime updatedAt, List<LineSnapshot> items) {
+    }
+
+    record LineSnapshot(String id, String productId, String name, String description, BigDecimal price,
+            String currency, int quantity, String unit, String imageUrl) {
+    }
+
+    public WriteBackCartRepository(
+            CartRepositoryAdapter delegate,
+            DatabaseClient databaseClient,
+            TransactionalOperator transactionalOperator,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${cart.write-back.maximum-size:100000}") long maximumSize,
+            @Value("${cart.write-back.idle-ttl:30m}") Duration idleTtl,
+            @Value("${cart.write-back.batch-size:500}") int batchSize) {
+        this.delegate = delegate;
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.carts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(idleTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, carts, "carts");
+        Gauge.builder("carts.dirty", dirty, Map::size)
+                .description("Carts changed in memory and not yet flushed")
+                .register(meterRegistry);
+        this.loads = new SingleFlight<>("carts", meterRegistry);
+    }
+
+    @Override
+    public Mono<Cart> findByUserId(String userId) {
+        return Mono.defer(() -> {
+            Dirty pending = dirty.get(userId);
+            if (pending != null) {
+                return Mono.just(pending.cart().copy());
+            }
+            Cart cached = carts.getIfPresent(userId);
+            if (cached != null) {
+                return Mono.just(cached.copy());
+            }
+            return loads.execute(userId, () -> load(userId)).map(Cart::copy);
+        });
+    }
+
+    @Override
+    public Mono<Cart> save(Cart cart) {
+        return databaseClient.sql(JOURNAL_SQL)
+                .bind("userId", cart.getUserId())
+                .bind("cart", serialize(cart))
+                .map((row, metadata) -> row.get("id", Long.class))
+                .one()
+                .map(journalId -> {
+                    Cart stored = cart.copy();
+                    dirty.put(cart.getUserId(), new Dirty(stored, journalId));
+                    carts.put(cart.getUserId(), stored);
+                    return cart;
+                });
+    }
+
+    // Merged in memory like any other change; the hold runs before the change is journaled,
+    // so a failed hold leaves the cart as it was.
+    @Override
+    public Mono<Cart> addItem(String userId, CartItem item, Function<CartItem, Mono<Void>> beforeCommit) {
+        return findByUserId(userId).flatMap(cart -> {
+            cart.addItem(item);
+            CartItem line = cart.getItems().stream()
+                    .filter(existing -> existing.getProductId().equals(item.getProductId()))
+                    .findFirst()
+                    .orElseThrow();
+            return beforeCommit.apply(line).then(Mono.defer(() -> save(cart)));
+        });
+    }
+
+    @Override
+    public Mono<Void> flush(String userId) {
+        return Mono.defer(() -> {
+            Dirty pending = dirty.get(userId);
+            return pending != null ? write(List.of(pending)) : Mono.empty();
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${cart.write-back.flush-interval:PT5S}")
+    public Mono<Void> flush() {
+        return Flux.fromIterable(List.copyOf(dirty.values()))
+                .buffer(batchSize)
+                .concatMap(this::write)
+                .onErrorResume(ex -> {
+                    log.error("Error flushing dirty carts", ex);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    @PreDestroy
+    public void close() {
+        flush().block();
+    }
+
+    // Carts left in the journal by a crash are restored, and so flushed, without waiting for
+    // their users to come back.
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverJournal() {
+        databaseClient.sql("SELECT DISTINCT user_id FROM cart_journal")
+                .map((row, metadata) -> row.get("user_id", String.class))
+                .all()
+                .concatMap(this::findByUserId)
+                .count()
+                .subscribe(
+                        recovered -> {
+                            if (recovered > 0) {
+                                log.info("Restored {} carts from the cart journal", recovered);
+                            }
+                        },
+                        ex -> log.error("Error restoring carts from the cart journal", ex));
+    }
+
+    // The by-id operations below are not part of the cart service's flow and go straight to
+    // the database, bypassing the store.
+
+    @Override
+    public Mono<CartItem> saveCartItem(CartItem item) {
+        return delegate.saveCartItem(item);
+    }
+
+    @Override
+    public Mono<Void> deleteCartItem(String itemId) {
+        return delegate.deleteCartItem(itemId);
+    }
+
+    @Override
+    public Mono<Void> deleteAllCartItems(String cartId) {
+        return delegate.deleteAllCartItems(cartId);
+    }
+
+    @Override
+    public Flux<CartItem> findItemsByCartId(String cartId) {
+        return delegate.findItemsByCartId(cartId);
+    }
+
+    private Mono<Void> write(List<Dirty> batch) {
+        return delegate.saveAll(batch.stream().map(pending -> pending.cart().copy()).toList())
+                .then(databaseClient.sql(DROP_SNAPSHOTS_SQL)
+                        .bind("userIds", batch.stream().map(pending -> pending.cart().getUserId()).toArray(String[]::new))
+                        .bind("ids", batch.stream().map(Dirty::journalId).toArray(Long[]::new))
+                        .then())
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(written -> batch.forEach(pending -> {
+                    String userId = pending.cart().getUserId();
+                    // A cart changed again during the flush stays dirty; its next flush rewrites
+                    // what this one wrote, which is harmless.
+                    if (dirty.remove(userId, pending)) {
+                        Cart clean = pending.cart().copy();
+                        clean.markPersisted();
+                        carts.asMap().replace(userId, pending.cart(), clean);
+                    }
+                }));
+    }
+
+    private Mono<Cart> load(String userId) {
+        return databaseClient.sql(LATEST_SNAPSHOT_SQL)
+                .bind("userId", userId)
+                .map((row, metadata) -> Map.entry(row.get("id", Long.class), row.get("cart", String.class)))
+                .one()
+                .flatMap(snapshot -> delegate.findByUserId(userId)
+                        .map(stored -> {
+                            Cart restored = restore(stored, snapshot.getValue());
+                            dirty.putIfAbsent(userId, new Dirty(restored, snapshot.getKey()));
+                            return restored;
+                        }))
+                .switchIfEmpty(Mono.defer(() -> delegate.findByUserId(userId)))
+                .map(cart -> {
+                    // A change saved while this load was in flight wins over what was loaded.
+                    Cart current = carts.asMap().putIfAbsent(userId, cart);
+                    return current != null ? current : cart;
+                });
+    }
+
+    private String serialize(Cart cart) {
+        CartSnapshot snapshot = new CartSnapshot(cart.getId(), cart.getUserId(), cart.getUpdatedAt(),
+                cart.getItems().stream()
+                        .map(item -> new LineSnapshot(item.getId(), item.getProductId(), item.getName(),
+                                item.getDescription(), item.getPrice().getAmount(), item.getCurrency(),
+                                item.getQuantity(), item.getUnit(), item.getImageUrl()))
+                        .toList());
+        try {
+            return objectMapper.writeValueAsString(snapshot);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize cart " + cart.getId(), ex);
+        }
+    }
+
+    // Applies a journaled snapshot over the cart as stored, so the difference between the two
+    // is what the next flush writes.
+    private Cart restore(Cart stored, String json) {
+        try {
+            CartSnapshot snapshot = objectMapper.readValue(json, CartSnapshot.class);
+            List<CartItem> items = new ArrayList<>(snapshot.items().stream()
+                    .map(line -> CartItem.builder()
+                            .id(line.id())
+                            .cartId(stored.getId())
+                            .productId(line.productId())
+                            .name(line.name())
+                            .description(line.description())
+                            .price(Money.of(line.price(), line.currency()))
+                            .quantity(line.quantity())
+                            .unit(line.unit())
+                            .imageUrl(line.imageUrl())
+                            .build())
+                    .toList());
+            stored.replaceItems(items);
+            stored.setUpdatedAt(snapshot.updatedAt());
+            return stored;
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not restore cart of user " + stored.getUserId(), ex);
+        }
+    }
+}
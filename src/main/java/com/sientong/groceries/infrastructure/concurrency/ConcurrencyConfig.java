@@ -0,0 +1,17 @@
+package com.sientong.groceries.infrastructure.concurrency;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.sientong.groceries.domain.common.MutationSerializer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class ConcurrencyConfig {
+
+    @Bean
+    public MutationSerializer<String> cartLanes(MeterRegistry meterRegistry) {
+        return new MutationLanes<>("cart", meterRegistry);
+    }
+}
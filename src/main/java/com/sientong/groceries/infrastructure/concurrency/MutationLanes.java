@@ -0,0 +1,78 @@
+package com.sientong.groceries.infrastructure.concurrency;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.sientong.groceries.domain.common.MutationSerializer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Runs mutations one at a time per key, in subscription order, while mutations for different
+ * keys run side by side. Each key's lane is just the completion signal of its last queued
+ * mutation, which the next one waits for; no thread is blocked while waiting, and a lane is
+ * dropped as soon as it drains. Serialization is per instance only, so mutations that reach
+ * other instances still rely on the database to stay consistent.
+ */
+public class MutationLanes<K> implements MutationSerializer<K> {
+    private final Map<K, Mono<Void>> tails = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Counter immediate;
+    private final Counter queued;
+
+    public MutationLanes(String name, MeterRegistry meterRegistry) {
+        this.immediate = Counter.builder("mutation.lanes.calls")
+                .description("Mutations that found their lane free")
+                .tag("name", name)
+                .tag("outcome", "immediate")
+                .register(meterRegistry);
+        this.queued = Counter.builder("mutation.lanes.calls")
+                .description("Mutations that had to wait for another on the same key")
+                .tag("name", name)
+                .tag("outcome", "queued")
+                .register(meterRegistry);
+        Gauge.builder("mutation.lanes.pending", pending, AtomicInteger::get)
+                .description("Mutations running or waiting for their lane")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <V> Mono<V> execute(K key, Supplier<Mono<V>> mutation) {
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            Mono<Void> tail = done.asMono();
+            Mono<Void> previous = tails.put(key, tail);
+            pending.incrementAndGet();
+            if (previous == null) {
+                immediate.increment();
+            } else {
+                queued.increment();
+            }
+            // Like SingleFlight, the lane is released before the outcome reaches subscribers,
+            // so one that reacts with another mutation on the same key does not wait on itself.
+            Runnable release = () -> {
+                tails.remove(key, tail);
+                pending.decrementAndGet();
+                done.tryEmitEmpty();
+            };
+            Mono<Void> turn = previous != null ? previous : Mono.empty();
+            return turn
+                    .then(Mono.defer(mutation))
+                    .doOnTerminate(release)
+                    // Cancelled while still waiting: the lane is held until the mutation ahead
+                    // finishes, so the one behind cannot overtake it.
+                    .doOnCancel(() -> turn.doFinally(signal -> release.run()).subscribe());
+        });
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+}
@@ -0,0 +1,217 @@
+package com.sientong.groceries.infrastructure.inventory;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.sientong.groceries.domain.inventory.StockAlertService;
+import com.sientong.groceries.domain.product.InsufficientStockException;
+import com.sientong.groceries.infrastructure.cache.ProductCache;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Opt-in write-behind stock for flash-sale products ("hot SKUs", listed in
+ * {@code inventory.hot-skus.ids}). Stock for these products is counted in memory by a
+ * {@link StripedStockCounter}, so selling one does not lock its products row. Every change
+ * is first appended to the stock_journal table, which takes no row locks, and a scheduled
+ * flush folds the journal into products.quantity with one UPDATE per product, which is also
+ * when threshold crossings are detected for these products.
+ * <p>
+ * A counter is seeded on first use from the row minus whatever the journal still holds, so
+ * nothing is lost across restarts. The counter is the authority for its product, which
+ * means one instance must serve all of a hot SKU's stock changes: list hot SKUs only in
+ * single-instance deployments, since each instance would otherwise sell the whole stock
+ * again from its own counter. products.quantity lags the counter by up to one flush interval. Hot SKUs take no holds (see ReservationRepositoryAdapter):
+ * during a flash sale, stock goes to whoever checks out first.
+ */
+@Slf4j
+@Component
+public class HotStockCounters {
+    private final DatabaseClient databaseClient;
+    private final ProductCache productCache;
+    private final StockAlertService stockAlertService;
+    private final Set<String> hotProductIds;
+    private final Map<String, Mono<StripedStockCounter>> counters = new ConcurrentHashMap<>();
+
+    private static final String SEED_SQL = """
+            SELECT CAST(p.quantity - COALESCE((SELECT SUM(j.quantity) FROM stock_journal j WHERE j.product_id = p.id), 0) AS INTEGER) AS quantity
+            FROM products p WHERE p.id = :id
+            """;
+
+    private static final String JOURNAL_SQL = """
+            INSERT INTO stock_journal (product_id, quantity)
+            SELECT * FROM unnest(CAST(:ids AS varchar[]), CAST(:quantities AS int[]))
+            """;
+
+    private static final String SET_SQL = """
+            WITH journal AS (
+                INSERT INTO stock_journal (product_id, quantity) VALUES (:id, :quantity)
+            )
+            UPDATE products SET unit = :unit, updated_at = CURRENT_TIMESTAMP WHERE id = :id
+            """;
+
+    // Only journal rows committed before the statement started are deleted, so entries
+    // appended during the flush wait for the next one.
+    private static final String FLUSH_SQL = """
+            WITH flushed AS (
+                DELETE FROM stock_journal RETURNING product_id, quantity
+            ), totals AS (
+                SELECT product_id, SUM(quantity) AS quantity FROM flushed GROUP BY product_id
+            )
+            UPDATE products p SET quantity = p.quantity - t.quantity, updated_at = CURRENT_TIMESTAMP
+            FROM totals t WHERE p.id = t.product_id
+            RETURNING p.id, CAST(p.quantity + t.quantity AS INTEGER) AS previous, p.quantity, p.reorder_threshold
+            """;
+
+    public HotStockCounters(
+            DatabaseClient databaseClient,
+            ProductCache productCache,
+            StockAlertService stockAlertService,
+            @Value("${inventory.hot-skus.ids:}") List<String> hotProductIds) {
+        this.databaseClient = databaseClient;
+        this.productCache = productCache;
+        this.stockAlertService = stockAlertService;
+        this.hotProductIds = Set.copyOf(hotProductIds);
+    }
+
+    public boolean isHot(String productId) {
+        return hotProductIds.contains(productId);
+    }
+
+    /**
+     * Takes the quantities from the counters, all or nothing. Fails with
+     * {@link InsufficientStockException} naming the short products; nothing is journaled
+     * until {@link #journal} is called, and on failure of a later step the caller must
+     * {@link #giveBack} what was taken.
+     */
+    public Mono<Void> take(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Mono.empty();
+        }
+        return counters(quantities).flatMap(found -> {
+            Set<String> missing = new HashSet<>(quantities.keySet());
+            missing.removeAll(found.keySet());
+            Map<String, Integer> taken = new LinkedHashMap<>();
+            // Every line is tried so the error names all short products, not just the first.
+            quantities.forEach((productId, quantity) -> {
+                StripedStockCounter counter = found.get(productId);
+                if (counter != null && counter.tryTake(quantity)) {
+                    taken.put(productId, quantity);
+                } else {
+                    missing.add(productId);
+                }
+            });
+            if (missing.isEmpty()) {
+                return Mono.<Void>empty();
+            }
+            taken.forEach((productId, quantity) -> found.get(productId).add(quantity));
+            return Mono.error(new InsufficientStockException(missing));
+        });
+    }
+
+    public Mono<Void> giveBack(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Mono.empty();
+        }
+        return counters(quantities)
+                .doOnNext(found -> quantities.forEach((productId, quantity) -> {
+                    StripedStockCounter counter = found.get(productId);
+                    if (counter != null) {
+                        counter.add(quantity);
+                    }
+                }))
+                .then();
+    }
+
+    /**
+     * Appends stock changes to the journal: positive quantities were sold, negative ones
+     * returned. Joins the caller's transaction, if any.
+     */
+    public Mono<Void> journal(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(JOURNAL_SQL)
+                .bind("ids", quantities.keySet().toArray(String[]::new))
+                .bind("quantities", quantities.values().toArray(Integer[]::new))
+                .then();
+    }
+
+    /**
+     * Replaces the stock of a hot product, journaling the difference to the count it
+     * replaces. Completes empty when the product does not exist.
+     */
+    public Mono<Integer> set(String productId, int quantity, String unit) {
+        return counter(productId).flatMap(counter -> {
+            int replaced = counter.drain();
+            counter.add(quantity);
+            return databaseClient.sql(SET_SQL)
+                    .bind("id", productId)
+                    .bind("quantity", replaced - quantity)
+                    .bind("unit", unit)
+                    .then()
+                    .thenReturn(quantity)
+                    .onErrorResume(ex -> {
+                        // Put back the replaced count, keeping whatever sold since.
+                        int left = counter.drain();
+                        counter.add(replaced - (quantity - left));
+                        return Mono.error(ex);
+                    });
+        });
+    }
+
+    public Mono<Integer> available(String productId) {
+        return counter(productId).map(StripedStockCounter::available);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.hot-skus.flush-interval:PT1S}")
+    public Mono<Void> flush() {
+        if (hotProductIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(FLUSH_SQL)
+                .map(new StockLevelRowMapper())
+                .all()
+                .collectList()
+                .doOnNext(flushed -> {
+                    if (!flushed.isEmpty()) {
+                        flushed.forEach(level -> productCache.invalidate(level.productId()));
+                        stockAlertService.stockChanged(flushed);
+                    }
+                })
+                .onErrorResume(ex -> {
+                    log.error("Error flushing hot SKU stock journal", ex);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Map<String, StripedStockCounter>> counters(Map<String, Integer> quantities) {
+        return Flux.fromIterable(quantities.keySet())
+                .concatMap(productId -> counter(productId).map(counter -> Map.entry(productId, counter)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    // Seeded once per product; a product that is not found (or fails to load) is looked up
+    // again next time.
+    private Mono<StripedStockCounter> counter(String productId) {
+        return counters.computeIfAbsent(productId, id -> databaseClient.sql(SEED_SQL)
+                .bind("id", id)
+                .map((row, metadata) -> new StripedStockCounter(row.get("quantity", Integer.class)))
+                .one()
+                .doOnError(ex -> counters.remove(id))
+                .switchIfEmpty(Mono.fromRunnable(() -> counters.remove(id)))
+                .cache());
+    }
+}
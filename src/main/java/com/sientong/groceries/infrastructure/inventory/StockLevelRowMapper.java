@@ -0,0 +1,23 @@
+package com.sientong.groceries.infrastructure.inventory;
+
+import java.util.function.BiFunction;
+
+import com.sientong.groceries.domain.inventory.StockLevel;
+
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+
+/**
+ * Maps the {@code RETURNING id, previous, quantity, reorder_threshold} of a stock write, for
+ * threshold checks once it has committed.
+ */
+public class StockLevelRowMapper implements BiFunction<Row, RowMetadata, StockLevel> {
+    @Override
+    public StockLevel apply(Row row, RowMetadata metadata) {
+        return new StockLevel(
+                row.get("id", String.class),
+                row.get("previous", Integer.class),
+                row.get("quantity", Integer.class),
+                row.get("reorder_threshold", Integer.class));
+    }
+}
@@ -0,0 +1,257 @@
+package com.sientong.groceries.infrastructure.inventory;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.sientong.groceries.domain.inventory.StockAlertService;
+import com.sientong.groceries.infrastructure.cache.ProductCache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Database-only relief for hot products: a product's stock can be split across rows of
+ * product_stock_shards, and a sale then locks one of them rather
+ * than the products row, so N checkouts can proceed side by side. A sale picks a random shard
+ * with enough stock, skipping ones locked by other checkouts. When all of those are locked it
+ * waits for one of them. Only when the stock is there but no single shard holds enough does it
+ * lock all of the product's shards, spread what is left evenly and take its share; a product
+ * that is simply short is reported as such without locking anything.
+ * <p>
+ * A sharded product's stock is the sum of its shards. products.quantity is brought in line by
+ * a periodic sync, which also rebalances products that have a dry shard, so listings and
+ * low-stock alerts lag the shards by up to one sync interval.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockShards {
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final ProductCache productCache;
+    private final StockAlertService stockAlertService;
+
+    // The shard is picked by an InitPlan, evaluated once: a subquery in FROM would be re-run
+    // by the recheck Postgres does when the row it updates has changed since the statement
+    // started, locking a second random shard.
+    private static final String TAKE_SQL = """
+            UPDATE product_stock_shards SET quantity = quantity - :quantity
+            WHERE product_id = :id AND quantity >= :quantity AND shard = (
+                SELECT shard FROM product_stock_shards
+                WHERE product_id = :id AND quantity >= :quantity
+                ORDER BY random() LIMIT 1
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING shard
+            """;
+
+    // TAKE_SQL without skipping locked shards: waits for one random shard with enough stock.
+    // A shard another sale drained in the meantime is passed over once its lock is released.
+    private static final String WAIT_SQL = """
+            UPDATE product_stock_shards SET quantity = quantity - :quantity
+            WHERE product_id = :id AND quantity >= :quantity AND shard = (
+                SELECT shard FROM product_stock_shards
+                WHERE product_id = :id AND quantity >= :quantity
+                ORDER BY random() LIMIT 1
+                FOR UPDATE
+            )
+            RETURNING shard
+            """;
+
+    // Reads committed stock without locking: whether the shards hold enough between them,
+    // and whether any one of them does.
+    private static final String AVAILABLE_SQL = """
+            SELECT COALESCE(SUM(quantity), 0) >= :quantity AS enough, COALESCE(MAX(quantity), 0) >= :quantity AS whole
+            FROM product_stock_shards WHERE product_id = :id
+            """;
+
+    // Shards are locked in shard order so concurrent rebalances of a product cannot deadlock.
+    private static final String LOCK_SQL = """
+            SELECT shard FROM product_stock_shards WHERE product_id = :id ORDER BY shard FOR UPDATE
+            """;
+
+    // Spreads the product's stock, less :take, evenly across its shards (numbered 0..n-1).
+    // Matches nothing when the shards together hold less than :take.
+    private static final String REBALANCE_SQL = """
+            WITH totals AS (
+                SELECT SUM(quantity) - :take AS quantity, COUNT(*) AS shards
+                FROM product_stock_shards WHERE product_id = :id
+            )
+            UPDATE product_stock_shards s
+            SET quantity = t.quantity / t.shards + CASE WHEN s.shard < t.quantity % t.shards THEN 1 ELSE 0 END
+            FROM totals t
+            WHERE s.product_id = :id AND t.quantity >= 0
+            RETURNING s.shard
+            """;
+
+    // Replaces the product's stock, spread evenly across its shards.
+    private static final String SET_SQL = """
+            WITH totals AS (
+                SELECT COUNT(*) AS shards FROM product_stock_shards WHERE product_id = :id
+            )
+            UPDATE product_stock_shards s
+            SET quantity = :quantity / t.shards + CASE WHEN s.shard < :quantity % t.shards THEN 1 ELSE 0 END
+            FROM totals t
+            WHERE s.product_id = :id
+            """;
+
+    // Runs after LOCK_SQL, so no sale can change the shards between the sum and the rewrite.
+    private static final String RESHARD_SQL = """
+            WITH product AS (
+                SELECT COALESCE((SELECT SUM(quantity) FROM product_stock_shards WHERE product_id = :id), quantity) AS quantity
+                FROM products WHERE id = :id
+            ), dropped AS (
+                DELETE FROM product_stock_shards WHERE product_id = :id AND (shard >= :shards OR :shards <= 1)
+            ), sharded AS (
+                INSERT INTO product_stock_shards (product_id, shard, quantity)
+                SELECT :id, g.shard, p.quantity / :shards + CASE WHEN g.shard < p.quantity % :shards THEN 1 ELSE 0 END
+                FROM product p, generate_series(0, :shards - 1) AS g(shard)
+                WHERE :shards > 1
+                ON CONFLICT (product_id, shard) DO UPDATE SET quantity = EXCLUDED.quantity
+            )
+            UPDATE products SET quantity = (SELECT quantity FROM product), updated_at = CURRENT_TIMESTAMP
+            WHERE id = :id
+            """;
+
+    private static final String DRY_SQL = """
+            SELECT product_id FROM product_stock_shards
+            GROUP BY product_id HAVING MIN(quantity) = 0 AND SUM(quantity) > 0
+            """;
+
+    private static final String SYNC_SQL = """
+            UPDATE products p SET quantity = t.quantity, updated_at = CURRENT_TIMESTAMP
+            FROM (SELECT product_id, SUM(quantity) AS quantity FROM product_stock_shards GROUP BY product_id) t
+            JOIN products previous ON previous.id = t.product_id
+            WHERE p.id = t.product_id AND p.quantity <> t.quantity
+            RETURNING p.id, previous.quantity AS previous, p.quantity, p.reorder_threshold
+            """;
+
+    /** The given products that have their stock in shards. */
+    public Mono<Set<String>> sharded(Collection<String> productIds) {
+        if (productIds.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        return databaseClient.sql("SELECT DISTINCT product_id FROM product_stock_shards WHERE product_id = ANY(:ids)")
+                .bind("ids", productIds.toArray(String[]::new))
+                .map((row, metadata) -> row.get("product_id", String.class))
+                .all()
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Takes {@code quantity} from the product's shards, returning whether there was enough.
+     * Must run in the caller's transaction; the shards it changed stay locked until then.
+     */
+    public Mono<Boolean> take(String productId, int quantity) {
+        return take(TAKE_SQL, productId, quantity)
+                .flatMap(taken -> taken ? Mono.just(true) : databaseClient.sql(AVAILABLE_SQL)
+                        .bind("id", productId)
+                        .bind("quantity", quantity)
+                        .map((row, metadata) -> new Availability(
+                                Boolean.TRUE.equals(row.get("enough", Boolean.class)),
+                                Boolean.TRUE.equals(row.get("whole", Boolean.class))))
+                        .one()
+                        .flatMap(available -> {
+                            if (!available.enough()) {
+                                return Mono.just(false);
+                            }
+                            // Shards that could serve the sale are only busy: queue on one of
+                            // them rather than on all of them.
+                            return available.whole()
+                                    ? take(WAIT_SQL, productId, quantity)
+                                            .flatMap(waited -> waited ? Mono.just(true) : rebalance(productId, quantity))
+                                    : rebalance(productId, quantity);
+                        }));
+    }
+
+    /**
+     * Moves the product's stock into {@code shards} evenly filled shards, or back onto the
+     * products row when {@code shards} is 1. Does nothing when the product does not exist.
+     */
+    public Mono<Void> reshard(String productId, int shards) {
+        return databaseClient.sql("SELECT id FROM products WHERE id = :id FOR UPDATE")
+                .bind("id", productId)
+                .map((row, metadata) -> row.get("id", String.class))
+                .one()
+                .flatMap(id -> lock(id)
+                        .then(databaseClient.sql(RESHARD_SQL)
+                                .bind("id", id)
+                                .bind("shards", shards)
+                                .then())
+                        .thenReturn(id))
+                .as(transactionalOperator::transactional)
+                .then();
+    }
+
+    /**
+     * Replaces a sharded product's stock, as a restock does; does nothing for a product
+     * without shards. Must run in the caller's transaction, after the products row is locked.
+     */
+    public Mono<Void> set(String productId, int quantity) {
+        return lock(productId)
+                .then(databaseClient.sql(SET_SQL)
+                        .bind("id", productId)
+                        .bind("quantity", quantity)
+                        .then());
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.stock-shards.sync-interval:PT10S}")
+    public Mono<Void> sync() {
+        return databaseClient.sql(DRY_SQL)
+                .map((row, metadata) -> row.get("product_id", String.class))
+                .all()
+                .concatMap(productId -> rebalance(productId, 0).as(transactionalOperator::transactional))
+                .then(databaseClient.sql(SYNC_SQL)
+                        .map(new StockLevelRowMapper())
+                        .all()
+                        .collectList())
+                .doOnNext(synced -> {
+                    if (!synced.isEmpty()) {
+                        synced.forEach(level -> productCache.invalidate(level.productId()));
+                        stockAlertService.stockChanged(synced);
+                    }
+                })
+                .onErrorResume(ex -> {
+                    log.error("Error syncing sharded stock", ex);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private record Availability(boolean enough, boolean whole) {
+    }
+
+    private Mono<Boolean> take(String sql, String productId, int quantity) {
+        return databaseClient.sql(sql)
+                .bind("id", productId)
+                .bind("quantity", quantity)
+                .fetch()
+                .rowsUpdated()
+                .map(taken -> taken > 0);
+    }
+
+    private Mono<Boolean> rebalance(String productId, int take) {
+        return lock(productId)
+                .then(databaseClient.sql(REBALANCE_SQL)
+                        .bind("id", productId)
+                        .bind("take", take)
+                        .fetch()
+                        .rowsUpdated())
+                .map(rebalanced -> rebalanced > 0);
+    }
+
+    private Mono<Void> lock(String productId) {
+        return databaseClient.sql(LOCK_SQL)
+                .bind("id", productId)
+                .fetch()
+                .all()
+                .then();
+    }
+}
@@ -0,0 +1,110 @@
+package com.sientong.groceries.infrastructure.inventory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stock count for one product, split across stripes so that concurrent takes mostly CAS
+ * different cache lines instead of all spinning on one. A take starts at the calling
+ * thread's home stripe and moves on to the others only when that one runs dry, so the total
+ * never goes below zero.
+ * <p>
+ * Units taken from several stripes by a take that then falls short are returned to the
+ * home stripe; right at sell-out a concurrent take can miss them and fail although the last
+ * units are, for a moment, still there.
+ */
+public final class StripedStockCounter {
+    // Longs per stripe: one 64-byte cache line, so neighbouring stripes do not false-share.
+    private static final int PADDING = 8;
+    private static final int MAX_STRIPES = 64;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    public StripedStockCounter(int quantity) {
+        this(quantity, Runtime.getRuntime().availableProcessors());
+    }
+
+    StripedStockCounter(int quantity, int concurrency) {
+        int stripes = Integer.highestOneBit(Math.max(1, Math.min(concurrency, MAX_STRIPES)) * 2 - 1);
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        this.mask = stripes - 1;
+        spread(Math.max(0, quantity), stripes);
+    }
+
+    /**
+     * Takes {@code quantity} units if that many are left, otherwise takes nothing and
+     * returns {@code false}.
+     */
+    public boolean tryTake(int quantity) {
+        if (quantity <= 0) {
+            return true;
+        }
+        int home = home();
+        long taken = 0;
+        for (int i = 0; i <= mask && taken < quantity; i++) {
+            taken += takeUpTo((home + i) & mask, quantity - taken);
+        }
+        if (taken < quantity) {
+            cells.addAndGet(home * PADDING, taken);
+            return false;
+        }
+        return true;
+    }
+
+    public void add(int quantity) {
+        if (quantity > 0) {
+            cells.addAndGet(home() * PADDING, quantity);
+        }
+    }
+
+    /**
+     * Takes every unit left and returns how many that was. Takes running concurrently may
+     * see the counter empty until units are added back.
+     */
+    public int drain() {
+        long drained = 0;
+        for (int stripe = 0; stripe <= mask; stripe++) {
+            drained += cells.getAndSet(stripe * PADDING, 0);
+        }
+        return (int) drained;
+    }
+
+    /** Sum over the stripes; exact only when no take or add is in flight. */
+    public int available() {
+        long available = 0;
+        for (int stripe = 0; stripe <= mask; stripe++) {
+            available += cells.get(stripe * PADDING);
+        }
+        return (int) available;
+    }
+
+    int stripes() {
+        return mask + 1;
+    }
+
+    private long takeUpTo(int stripe, long wanted) {
+        int index = stripe * PADDING;
+        while (true) {
+            long current = cells.get(index);
+            if (current == 0) {
+                return 0;
+            }
+            long taken = Math.min(current, wanted);
+            if (cells.compareAndSet(index, current, current - taken)) {
+                return taken;
+            }
+        }
+    }
+
+    // Spreads the initial stock evenly so that every thread starts with units close by.
+    private void spread(int quantity, int stripes) {
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            cells.set(stripe * PADDING, quantity / stripes + (stripe < quantity % stripes ? 1 : 0));
+        }
+    }
+
+    private int home() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
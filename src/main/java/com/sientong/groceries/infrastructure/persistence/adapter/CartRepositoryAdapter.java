@@ -1,11 +1,18 @@
 package com.sientong.groceries.infrastructure.persistence.adapter;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
 
 import com.sientong.groceries.domain.cart.Cart;
 import com.sientong.groceries.domain.cart.CartItem;
@@ -19,6 +26,7 @@ import com.sientong.groceries.infrastructure.persistence.repository.ReactiveCart
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
+import io.r2dbc.spi.Row;
 import reactor.core.publisher.Mono;
 
 @Slf4j
@@ -27,13 +35,71 @@ import reactor.core.publisher.Mono;
 public class CartRepositoryAdapter implements CartRepository {
     private final ReactiveCartRepository cartRepository;
     private final ReactiveCartItemRepository cartItemRepository;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+
+    private static final String UPSERT_CARTS_SQL = """
+            INSERT INTO carts (id, user_id, total, currency, updated_at)
+            SELECT * FROM unnest(CAST(:ids AS varchar[]), CAST(:userIds AS varchar[]), CAST(:totals AS numeric[]),
+                                 CAST(:currencies AS varchar[]), CAST(:updatedAts AS timestamp[]))
+            ON CONFLICT (user_id) DO UPDATE
+            SET total = EXCLUDED.total, currency = EXCLUDED.currency, updated_at = EXCLUDED.updated_at
+            """;
+
+    private static final String UPSERT_ITEMS_SQL = """
+            INSERT INTO cart_items (id, cart_id, product_id, name, description, price, currency, quantity, unit)
+            SELECT * FROM unnest(CAST(:ids AS varchar[]), CAST(:cartIds AS varchar[]), CAST(:productIds AS varchar[]),
+                                 CAST(:names AS varchar[]), CAST(:descriptions AS text[]), CAST(:prices AS numeric[]),
+                                 CAST(:currencies AS varchar[]), CAST(:quantities AS int[]), CAST(:units AS varchar[]))
+            ON CONFLICT (cart_id, product_id) DO UPDATE
+            SET name = EXCLUDED.name, description = EXCLUDED.description, price = EXCLUDED.price,
+                currency = EXCLUDED.currency, quantity = EXCLUDED.quantity, unit = EXCLUDED.unit
+            """;
+
+    // Whoever inserts first owns the user's cart; everyone else reads that one back.
+    private static final String CREATE_CART_SQL = """
+            INSERT INTO carts (id, user_id, total, currency, updated_at)
+            VALUES (:id, :userId, :total, :currency, :updatedAt)
+            ON CONFLICT (user_id) DO NOTHING
+            """;
+
+    // Creating or touching the cart row locks it, so concurrent adds to one cart queue up
+    // behind each other until the total has been recomputed.
+    private static final String ADD_ITEM_SQL = """
+            WITH cart AS (
+                INSERT INTO carts (id, user_id, total, currency, updated_at)
+                VALUES (:cartId, :userId, 0, :currency, LOCALTIMESTAMP)
+                ON CONFLICT (user_id) DO UPDATE SET updated_at = EXCLUDED.updated_at
+                RETURNING id
+            )
+            INSERT INTO cart_items (id, cart_id, product_id, name, description, price, currency, quantity, unit)
+            SELECT :id, cart.id, :productId, :name, :description, :price, :currency, :quantity, :unit FROM cart
+            ON CONFLICT (cart_id, product_id) DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity
+            RETURNING id, cart_id, product_id, name, description, price, currency, quantity, unit
+            """;
+
+    private static final String UPDATE_TOTAL_SQL = """
+            WITH cart AS (
+                UPDATE carts SET updated_at = LOCALTIMESTAMP,
+                    total = (SELECT COALESCE(SUM(price * quantity), 0) FROM cart_items WHERE cart_id = :cartId)
+                WHERE id = :cartId
+                RETURNING id, user_id, total, currency, updated_at
+            )
+            SELECT c.id AS cart_id, c.user_id, c.total, c.currency AS cart_currency, c.updated_at,
+                   i.id, i.product_id, i.name, i.description, i.price, i.currency, i.quantity, i.unit
+            FROM cart c LEFT JOIN cart_items i ON i.cart_id = c.id
+            ORDER BY i.id
+            """;
+
+    private static final String DELETE_ITEMS_SQL = """
+            DELETE FROM cart_items WHERE id = ANY(:ids)
+            """;
 
     @Override
     public Mono<Cart> findByUserId(String userId) {
         return cartRepository.findByUserId(userId)
                 .switchIfEmpty(createEmptyCart(userId))
                 .flatMap(cartEntity -> cartItemRepository.findByCartId(cartEntity.getId())
-                        .defaultIfEmpty(CartItemEntity.builder().build())
                         .map(CartItemEntity::toDomain)
                         .collectList()
                         .map(items -> {
@@ -45,32 +111,71 @@ public class CartRepositoryAdapter implements CartRepository {
 
     @Override
     public Mono<Cart> save(Cart cart) {
-        CartEntity cartEntity = CartEntity.fromDomain(cart);
-        return cartRepository.save(cartEntity)
-                .flatMap(savedCart -> {
-                    List<CartItemEntity> itemEntities = cart.getItems() != null ? cart.getItems().stream()
-                            .map(item -> {
-                                CartItemEntity entity = CartItemEntity.fromDomain(item);
-                                entity.setCartId(savedCart.getId());
-                                return entity;
-                            })
-                            .toList() : new ArrayList<>();
-                    
-                    if (itemEntities.isEmpty()) {
-                        Cart emptyCart = savedCart.toDomain();
-                        emptyCart.setItems(new ArrayList<>());
-                        return Mono.just(emptyCart);
-                    }
-
-                    return cartItemRepository.saveAll(itemEntities)
-                            .defaultIfEmpty(CartItemEntity.builder().build())
-                            .map(CartItemEntity::toDomain)
-                            .collectList()
-                            .map(savedItems -> {
-                                Cart savedCartWithItems = savedCart.toDomain();
-                                savedCartWithItems.setItems(savedItems != null ? savedItems : new ArrayList<>());
-                                return savedCartWithItems;
-                            });
+        return saveAll(List.of(cart)).thenReturn(cart);
+    }
+
+    /**
+     * Writes the carts' totals and only the lines changed since each was loaded, in a single
+     * transaction: one upsert for the carts, one delete for removed lines and one upsert for
+     * added and changed ones, however many carts there are.
+     */
+    public Mono<Void> saveAll(List<Cart> carts) {
+        List<CartItem> changed = new ArrayList<>();
+        Set<String> removed = new LinkedHashSet<>();
+        carts.forEach(cart -> {
+            cart.getItems().forEach(item -> item.setCartId(cart.getId()));
+            changed.addAll(cart.getChangedItems());
+            removed.addAll(cart.getRemovedItemIds());
+        });
+        return upsertCarts(carts.stream().map(CartEntity::fromDomain).toList())
+                .then(deleteItems(removed))
+                .then(upsertItems(changed))
+                .as(transactionalOperator::transactional)
+                .then(Mono.fromRunnable(() -> carts.forEach(Cart::markPersisted)));
+    }
+
+    @Override
+    public Mono<Void> flush(String userId) {
+        return Mono.empty();
+    }
+
+    /**
+     * One statement creates the cart if needed and upserts the line, then {@code beforeCommit}
+     * runs, and a second statement recomputes the total and returns the cart with its lines.
+     */
+    @Override
+    public Mono<Cart> addItem(String userId, CartItem item, Function<CartItem, Mono<Void>> beforeCommit) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(ADD_ITEM_SQL)
+                .bind("cartId", UUID.randomUUID().toString())
+                .bind("userId", userId)
+                .bind("id", item.getId())
+                .bind("productId", item.getProductId())
+                .bind("name", item.getName())
+                .bind("price", item.getPrice().getAmount())
+                .bind("currency", item.getCurrency())
+                .bind("quantity", item.getQuantity())
+                .bind("unit", item.getUnit());
+        // Imported products may have no description.
+        spec = item.getDescription() != null
+                ? spec.bind("description", item.getDescription())
+                : spec.bindNull("description", String.class);
+        return spec.map((row, metadata) -> toCartItem(row))
+                .one()
+                .flatMap(line -> beforeCommit.apply(line)
+                        .then(databaseClient.sql(UPDATE_TOTAL_SQL)
+                                .bind("cartId", line.getCartId())
+                                .map((row, metadata) -> new CartRow(
+                                        toCart(row), row.get("id", String.class) != null ? toCartItem(row) : null))
+                                .all()
+                                .collectList()))
+                .as(transactionalOperator::transactional)
+                .map(rows -> {
+                    Cart cart = rows.get(0).cart();
+                    cart.setItems(new ArrayList<>(rows.stream()
+                            .map(CartRow::item)
+                            .filter(Objects::nonNull)
+                            .toList()));
+                    return cart;
                 });
     }
 
@@ -99,13 +204,83 @@ public class CartRepositoryAdapter implements CartRepository {
 
     private Mono<CartEntity> createEmptyCart(String userId) {
         log.debug("Creating new empty cart for user: {}", userId);
-        CartEntity cart = CartEntity.builder()
-                .id(UUID.randomUUID().toString())
-                .userId(userId)
-                .total(Money.ZERO.getAmount())
-                .currency(Money.ZERO.getCurrency())
-                .updatedAt(LocalDateTime.now())
-                .build();
-        return cartRepository.save(cart);
+        return databaseClient.sql(CREATE_CART_SQL)
+                .bind("id", UUID.randomUUID().toString())
+                .bind("userId", userId)
+                .bind("total", Money.ZERO.getAmount())
+                .bind("currency", Money.ZERO.getCurrency())
+                .bind("updatedAt", LocalDateTime.now())
+                .then()
+                .then(cartRepository.findByUserId(userId));
+    }
+
+    // A row of UPDATE_TOTAL_SQL: the cart, and one of its lines unless it has none.
+    private record CartRow(Cart cart, CartItem item) {
+    }
+
+    private static Cart toCart(Row row) {
+        return CartEntity.builder()
+                .id(row.get("cart_id", String.class))
+                .userId(row.get("user_id", String.class))
+                .total(row.get("total", BigDecimal.class))
+                .currency(row.get("cart_currency", String.class))
+                .updatedAt(row.get("updated_at", LocalDateTime.class))
+                .build()
+                .toDomain();
+    }
+
+    private static CartItem toCartItem(Row row) {
+        CartItem item = CartItemEntity.builder()
+                .id(row.get("id", String.class))
+                .productId(row.get("product_id", String.class))
+                .name(row.get("name", String.class))
+                .description(row.get("description", String.class))
+                .price(row.get("price", BigDecimal.class))
+                .currency(row.get("currency", String.class))
+                .quantity(row.get("quantity", Integer.class))
+                .unit(row.get("unit", String.class))
+                .build()
+                .toDomain();
+        item.setCartId(row.get("cart_id", String.class));
+        return item;
+    }
+
+    private Mono<Void> upsertCarts(List<CartEntity> carts) {
+        if (carts.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(UPSERT_CARTS_SQL)
+                .bind("ids", carts.stream().map(CartEntity::getId).toArray(String[]::new))
+                .bind("userIds", carts.stream().map(CartEntity::getUserId).toArray(String[]::new))
+                .bind("totals", carts.stream().map(CartEntity::getTotal).toArray(BigDecimal[]::new))
+                .bind("currencies", carts.stream().map(CartEntity::getCurrency).toArray(String[]::new))
+                .bind("updatedAts", carts.stream().map(cart -> cart.getUpdatedAt().toString()).toArray(String[]::new))
+                .then();
+    }
+
+    private Mono<Void> upsertItems(List<CartItem> items) {
+        if (items.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(UPSERT_ITEMS_SQL)
+                .bind("ids", items.stream().map(CartItem::getId).toArray(String[]::new))
+                .bind("cartIds", items.stream().map(CartItem::getCartId).toArray(String[]::new))
+                .bind("productIds", items.stream().map(CartItem::getProductId).toArray(String[]::new))
+                .bind("names", items.stream().map(CartItem::getName).toArray(String[]::new))
+                .bind("descriptions", items.stream().map(CartItem::getDescription).toArray(String[]::new))
+                .bind("prices", items.stream().map(item -> item.getPrice().getAmount()).toArray(BigDecimal[]::new))
+                .bind("currencies", items.stream().map(CartItem::getCurrency).toArray(String[]::new))
+                .bind("quantities", items.stream().map(CartItem::getQuantity).toArray(Integer[]::new))
+                .bind("units", items.stream().map(CartItem::getUnit).toArray(String[]::new))
+                .then();
+    }
+
+    private Mono<Void> deleteItems(Set<String> itemIds) {
+        if (itemIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(DELETE_ITEMS_SQL)
+                .bind("ids", itemIds.toArray(String[]::new))
+                .then();
     }
 }
@@ -0,0 +1,26 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+
+import com.sientong.groceries.domain.product.CatalogVersionRepository;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads the catalog_version row, which triggers on products and categories bump at most
+ * once per writing transaction.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogVersionRepositoryAdapter implements CatalogVersionRepository {
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> findCurrent() {
+        return databaseClient.sql("SELECT version FROM catalog_version")
+                .map((row, metadata) -> row.get("version", Long.class))
+                .one();
+    }
+}
@@ -1,41 +1,149 @@
 package com.sientong.groceries.infrastructure.persistence.adapter;
 
 import com.sientong.groceries.domain.category.Category;
+import com.sientong.groceries.domain.category.CategoryFacet;
 import com.sientong.groceries.domain.category.CategoryRepository;
+import com.sientong.groceries.domain.product.CatalogVersionRepository;
 import com.sientong.groceries.infrastructure.persistence.entity.CategoryEntity;
 import com.sientong.groceries.infrastructure.persistence.repository.ReactiveCategoryRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Categories change a few times a year but are read on every catalog page, so reads are
+ * served from an immutable in-memory snapshot. Writes go to the database first and then swap
+ * in a new snapshot; callers always receive copies, never the snapshot's own instances.
+ * Writes made through other instances reach this one when the snapshot is next reloaded,
+ * every {@code categories.snapshot.refresh-interval}. The snapshot carries the catalog version
+ * it is at least as new as, which is what its listing's ETag is derived from.
+ */
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class CategoryRepositoryAdapter implements CategoryRepository {
     private final ReactiveCategoryRepository repository;
+    private final DatabaseClient databaseClient;
+    private final CatalogVersionRepository catalogVersionRepository;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    // Bumped by every write, so a load that raced with a write is not installed over it.
+    // Compared inside the snapshot swap, so a write landing during the swap is not lost.
+    private final AtomicLong writes = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSnapshot() {
+        snapshot().subscribe(
+                loaded -> log.info("Loaded {} categories into snapshot", loaded.all().size()),
+                ex -> log.error("Error loading category snapshot", ex));
+    }
+
+    @Scheduled(fixedDelayString = "${categories.snapshot.refresh-interval:PT1M}")
+    public Mono<Void> refreshSnapshot() {
+        return load()
+                .onErrorResume(ex -> {
+                    log.error("Error refreshing category snapshot", ex);
+                    return Mono.empty();
+                })
+                .then();
+    }
 
     @Override
     public Flux<Category> findAll() {
-        return repository.findAll()
-                .map(this::toCategory);
+        return snapshot().flatMapIterable(Snapshot::all)
+                .map(this::copy);
     }
 
     @Override
     public Mono<Category> findById(String id) {
-        return repository.findById(id)
-                .map(this::toCategory);
+        return snapshot().mapNotNull(current -> current.byId().get(id))
+                .map(this::copy);
+    }
+
+    @Override
+    public Mono<Long> findCatalogVersion() {
+        return snapshot().map(Snapshot::version);
+    }
+
+    @Override
+    public Flux<CategoryFacet> findFacets() {
+        return databaseClient.sql("SELECT c.id, c.name, COALESCE(f.product_count, 0) AS product_count, " +
+                        "COALESCE(f.in_stock_count, 0) AS in_stock_count FROM categories c " +
+                        "LEFT JOIN category_product_counts f ON f.category_id = c.id ORDER BY c.name")
+                .map((row, metadata) -> CategoryFacet.builder()
+                        .category(Category.builder()
+                                .id(row.get("id", String.class))
+                                .name(row.get("name", String.class))
+                                .build())
+                        .productCount(row.get("product_count", Long.class))
+                        .inStockCount(row.get("in_stock_count", Long.class))
+                        .build())
+                .all();
     }
 
     @Override
     public Mono<Category> save(Category category) {
         CategoryEntity entity = toEntity(category);
         return repository.save(entity)
-                .map(this::toCategory);
+                .map(this::toCategory)
+                .flatMap(saved -> catalogVersionRepository.findCurrent()
+                        .doOnNext(version -> update(current -> current.with(copy(saved), version)))
+                        .thenReturn(saved));
     }
 
     @Override
     public Mono<Void> deleteById(String id) {
-        return repository.deleteById(id);
+        return repository.deleteById(id)
+                .then(catalogVersionRepository.findCurrent())
+                .doOnNext(version -> update(current -> current.without(id, version)))
+                .then();
+    }
+
+    private Mono<Snapshot> snapshot() {
+        return Mono.defer(() -> {
+            Snapshot current = snapshot.get();
+            return current != null ? Mono.just(current) : load();
+        });
+    }
+
+    // The loaded snapshot is returned to the caller either way, but only installed if no
+    // write happened since the load started. The version is read before the rows, so the
+    // rows are at least as new as it.
+    private Mono<Snapshot> load() {
+        return Mono.defer(() -> {
+            long writesBefore = writes.get();
+            return catalogVersionRepository.findCurrent()
+                    .flatMap(version -> repository.findAll()
+                            .map(this::toCategory)
+                            .collectList()
+                            .map(categories -> Snapshot.of(version, categories)))
+                    .doOnNext(loaded -> snapshot.updateAndGet(
+                            current -> writes.get() == writesBefore ? loaded : current));
+        });
+    }
+
+    private void update(UnaryOperator<Snapshot> change) {
+        writes.incrementAndGet();
+        snapshot.updateAndGet(current -> current != null ? change.apply(current) : null);
+    }
+
+    private Category copy(Category category) {
+        return new Category(category.getId(), category.getName());
     }
 
     private Category toCategory(CategoryEntity entity) {
@@ -51,4 +159,28 @@ public class CategoryRepositoryAdapter implements CategoryRepository {
                 .name(category.getName())
                 .build();
     }
+
+    // A local write is patched in with the version read after it committed, which covers it.
+    private record Snapshot(long version, List<Category> all, Map<String, Category> byId) {
+        static Snapshot of(long version, Collection<Category> categories) {
+            List<Category> sorted = categories.stream()
+                    .sorted(Comparator.comparing(Category::getName, Comparator.nullsLast(Comparator.naturalOrder())))
+                    .toList();
+            Map<String, Category> byId = new HashMap<>();
+            sorted.forEach(category -> byId.put(category.getId(), category));
+            return new Snapshot(version, sorted, Collections.unmodifiableMap(byId));
+        }
+
+        Snapshot with(Category category, long writtenVersion) {
+            Map<String, Category> updated = new HashMap<>(byId);
+            updated.put(category.getId(), category);
+            return of(Math.max(version, writtenVersion), updated.values());
+        }
+
+        Snapshot without(String id, long writtenVersion) {
+            Map<String, Category> updated = new HashMap<>(byId);
+            updated.remove(id);
+            return of(Math.max(version, writtenVersion), updated.values());
+        }
+    }
 }
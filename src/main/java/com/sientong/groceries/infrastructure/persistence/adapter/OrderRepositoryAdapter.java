@@ -1,25 +1,84 @@
 package com.sientong.groceries.infrastructure.persistence.adapter;
 
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
 
 import com.sientong.groceries.domain.order.DeliveryInfo;
 import com.sientong.groceries.domain.order.Order;
+import com.sientong.groceries.domain.order.OrderItem;
 import com.sientong.groceries.domain.order.OrderRepository;
 import com.sientong.groceries.domain.order.OrderStatus;
+import com.sientong.groceries.domain.product.BestsellerRanking;
+import com.sientong.groceries.domain.product.CoPurchaseIndex;
+import com.sientong.groceries.domain.product.Product;
+import com.sientong.groceries.domain.product.ProductRepository;
 import com.sientong.groceries.infrastructure.persistence.entity.OrderEntity;
 import com.sientong.groceries.infrastructure.persistence.entity.OrderItemEntity;
 import com.sientong.groceries.infrastructure.persistence.repository.ReactiveOrderItemRepository;
 import com.sientong.groceries.infrastructure.persistence.repository.ReactiveOrderRepository;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class OrderRepositoryAdapter implements OrderRepository {
     private final ReactiveOrderRepository orderRepository;
     private final ReactiveOrderItemRepository orderItemRepository;
+    private final ProductRepository productRepository;
+    private final BestsellerRanking bestsellerRanking;
+    private final CoPurchaseIndex coPurchaseIndex;
+    private final DatabaseClient databaseClient;
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadBestsellerRanking() {
+        LocalDate since = LocalDate.now().minusDays(BestsellerRanking.MAX_WINDOW_DAYS - 1);
+        databaseClient.sql("SELECT oi.product_id, p.category_id, CAST(o.created_at AS DATE) AS day, " +
+                        "SUM(oi.quantity) AS units FROM order_items oi " +
+                        "JOIN orders o ON o.id = oi.order_id JOIN products p ON p.id = oi.product_id " +
+                        "WHERE o.created_at >= :since AND o.status <> 'CANCELLED' " +
+                        "GROUP BY oi.product_id, p.category_id, CAST(o.created_at AS DATE)")
+                .bind("since", since.atStartOfDay())
+                .map((row, metadata) -> {
+                    bestsellerRanking.record(
+                            row.get("product_id", String.class),
+                            row.get("category_id", String.class),
+                            row.get("units", Long.class),
+                            row.get("day", LocalDate.class));
+                    return 1;
+                })
+                .all()
+                .count()
+                .subscribe(
+                        rows -> log.info("Loaded {} daily product sales into bestseller ranking", rows),
+                        ex -> log.error("Error loading bestseller ranking", ex));
+    }
+
+    // Streams every order line in order_id order and feeds the index one basket at a time, so
+    // memory stays bounded by the largest order rather than by the order history.
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCoPurchaseIndex() {
+        databaseClient.sql("SELECT oi.order_id, oi.product_id FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+                        "WHERE o.status <> 'CANCELLED' ORDER BY oi.order_id")
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map((row, metadata) -> new String[] {row.get("order_id", String.class), row.get("product_id", String.class)})
+                .all()
+                .bufferUntilChanged(line -> line[0])
+                .doOnNext(basket -> coPurchaseIndex.record(basket.stream().map(line -> line[1]).toList()))
+                .count()
+                .subscribe(
+                        orders -> log.info("Loaded {} orders into co-purchase index", orders),
+                        ex -> log.error("Error loading co-purchase index", ex));
+    }
 
     @Override
     public Mono<Order> save(Order order) {
@@ -32,7 +91,28 @@ public class OrderRepositoryAdapter implements OrderRepository {
                         .map(items -> {
                             savedOrder.setItems(items);
                             return savedOrder.toDomain();
-                        }));
+                        }))
+                .doOnNext(saved -> coPurchaseIndex.record(saved.getItems().stream().map(OrderItem::getProductId).toList()))
+                .flatMap(saved -> recordSales(saved).thenReturn(saved));
+    }
+
+    // The ranking is best effort: a failed category lookup must not fail an order that is
+    // already persisted.
+    private Mono<Void> recordSales(Order order) {
+        List<String> productIds = order.getItems().stream().map(OrderItem::getProductId).toList();
+        LocalDate day = order.getCreatedAt().toLocalDate();
+        return productRepository.findAllByIds(productIds)
+                .doOnNext(products -> order.getItems().forEach(item -> {
+                    Product product = products.get(item.getProductId());
+                    bestsellerRanking.record(item.getProductId(),
+                            product != null ? product.getCategory().getId() : null,
+                            item.getQuantity().getValue(), day);
+                }))
+                .onErrorResume(ex -> {
+                    log.error("Error recording sales of order {}", order.getId(), ex);
+                    return Mono.empty();
+                })
+                .then();
     }
 
     @Override
@@ -59,11 +139,25 @@ public class OrderRepositoryAdapter implements OrderRepository {
 
     @Override
     public Mono<Order> updateStatus(String id, OrderStatus status) {
+        if (status == OrderStatus.CANCELLED) {
+            return orderRepository.cancel(id)
+                    .filter(cancelled -> cancelled)
+                    .flatMap(cancelled -> findById(id))
+                    .doOnNext(this::subtractSales);
+        }
         return orderRepository.updateStatus(id, status)
                 .filter(updated -> updated)
                 .flatMap(updated -> findById(id));
     }
 
+    // A cancelled order stops counting as soon as it is cancelled, as it would after a restart,
+    // whose load skips cancelled orders.
+    private void subtractSales(Order order) {
+        LocalDate day = order.getCreatedAt().toLocalDate();
+        order.getItems().forEach(item ->
+                bestsellerRanking.subtract(item.getProductId(), item.getQuantity().getValue(), day));
+    }
+
     @Override
     public Mono<Order> updateDeliveryInfo(String id, DeliveryInfo deliveryInfo) {
         return orderRepository.updateDeliveryInfo(
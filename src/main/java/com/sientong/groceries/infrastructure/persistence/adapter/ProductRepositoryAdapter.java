@@ -1,12 +1,38 @@
 package com.sientong.groceries.infrastructure.persistence.adapter;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
 
 import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.inventory.StockAlertService;
+import com.sientong.groceries.domain.inventory.StockLevel;
+import com.sientong.groceries.domain.product.InsufficientStockException;
 import com.sientong.groceries.domain.product.Product;
+import com.sientong.groceries.domain.product.ProductCursor;
 import com.sientong.groceries.domain.product.ProductRepository;
+import com.sientong.groceries.domain.product.ProductSummary;
+import com.sientong.groceries.domain.product.StockNotShardableException;
+import com.sientong.groceries.infrastructure.cache.ProductCache;
+import com.sientong.groceries.infrastructure.inventory.HotStockCounters;
+import com.sientong.groceries.infrastructure.inventory.StockLevelRowMapper;
+import com.sientong.groceries.infrastructure.inventory.StockShards;
 import com.sientong.groceries.infrastructure.persistence.entity.ProductEntity;
+import com.sientong.groceries.infrastructure.persistence.entity.ProductSummaryEntity;
 import com.sientong.groceries.infrastructure.persistence.repository.ReactiveProductRepository;
 
 import lombok.RequiredArgsConstructor;
@@ -18,12 +44,72 @@ import reactor.core.publisher.Mono;
 public class ProductRepositoryAdapter implements ProductRepository {
     private final ReactiveProductRepository reactiveProductRepository;
     private final DatabaseClient databaseClient;
-    private static final int LOW_STOCK_THRESHOLD = 5;
+    private final ProductCache productCache;
+    private final TransactionalOperator transactionalOperator;
+    private final HotStockCounters hotStockCounters;
+    private final StockShards stockShards;
+    private final StockAlertService stockAlertService;
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // One statement per batch: the columns travel as parallel arrays and unnest() turns them
+    // back into rows, so a batch costs a single round trip regardless of its size. Stock is
+    // only written for new products; for existing ones it goes through updateStock, so hot
+    // SKU counters, stock shards and low-stock alerts see it. The statement returns the
+    // existing products whose stock differs from their row (sharded ones always do, their
+    // row lags the shards), read from the snapshot taken before the upsert.
+    private static final String UPSERT_ALL_SQL = """
+            WITH input AS (
+                SELECT * FROM unnest(CAST(:ids AS varchar[]), CAST(:names AS varchar[]), CAST(:descriptions AS text[]),
+                                     CAST(:prices AS numeric[]), CAST(:currencies AS varchar[]), CAST(:categoryIds AS varchar[]),
+                                     CAST(:categoryNames AS varchar[]), CAST(:quantities AS int[]), CAST(:units AS varchar[]),
+                                     CAST(:imageUrls AS varchar[]))
+                     AS t(id, name, description, price, currency, category_id, category_name, quantity, unit, image_url)
+            ), upserted AS (
+                INSERT INTO products (id, name, description, price, currency, category_id, category_name, quantity, unit,
+                                      image_url, created_at, updated_at)
+                SELECT id, name, description, price, currency, category_id, category_name, quantity, unit, image_url,
+                       CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+                FROM input
+                ON CONFLICT (id) DO UPDATE SET
+                    name = EXCLUDED.name,
+                    description = EXCLUDED.description,
+                    price = EXCLUDED.price,
+                    currency = EXCLUDED.currency,
+                    category_id = EXCLUDED.category_id,
+                    category_name = COALESCE(EXCLUDED.category_name, products.category_name),
+                    unit = EXCLUDED.unit,
+                    image_url = EXCLUDED.image_url,
+                    updated_at = CURRENT_TIMESTAMP
+                RETURNING id
+            )
+            SELECT i.id
+            FROM input i JOIN products p ON p.id = i.id
+            WHERE p.quantity <> i.quantity
+               OR EXISTS (SELECT 1 FROM product_stock_shards s WHERE s.product_id = i.id)
+            """;
+
+    private static final String SIMILARITY_THRESHOLD_SQL = """
+            SELECT set_config('pg_trgm.word_similarity_threshold', :threshold, true)
+            """;
+
+    private static final String SEARCH_SIMILAR_SQL = """
+            SELECT * FROM products WHERE :query <% name
+            ORDER BY word_similarity(:query, name) DESC, id
+            LIMIT :limit
+            """;
 
     @Override
     public Mono<Product> findById(String id) {
-        return reactiveProductRepository.findById(id)
-                .map(ProductEntity::toDomain);
+        return productCache.findById(id,
+                () -> reactiveProductRepository.findById(id).map(ProductEntity::toDomain),
+                () -> reactiveProductRepository.findQuantityById(id));
+    }
+
+    @Override
+    public Mono<Map<String, Product>> findAllByIds(Collection<String> ids) {
+        return productCache.findAllByIds(ids, missing -> reactiveProductRepository
+                .findAllByIdIn(missing.toArray(String[]::new))
+                .map(ProductEntity::toDomain));
     }
 
     @Override
@@ -38,76 +124,357 @@ public class ProductRepositoryAdapter implements ProductRepository {
                 .map(ProductEntity::toDomain);
     }
 
+    @Override
+    public Flux<ProductSummary> findSummariesByCategory(String categoryId) {
+        return reactiveProductRepository.findSummariesByCategoryId(categoryId)
+                .map(ProductSummaryEntity::toDomain);
+    }
+
+    @Override
+    public Flux<ProductSummary> findPage(String categoryId, int limit, long offset) {
+        Flux<ProductSummaryEntity> rows = categoryId != null
+                ? reactiveProductRepository.findPageByCategoryId(categoryId, limit, offset)
+                : reactiveProductRepository.findPage(limit, offset);
+        return rows.map(ProductSummaryEntity::toDomain);
+    }
+
+    @Override
+    public Flux<ProductSummary> findPageAfter(String categoryId, ProductCursor cursor, int limit) {
+        Flux<ProductSummaryEntity> rows = categoryId != null
+                ? reactiveProductRepository.findPageByCategoryIdAfter(categoryId, cursor.getName(), cursor.getId(), limit)
+                : reactiveProductRepository.findPageAfter(cursor.getName(), cursor.getId(), limit);
+        return rows.map(ProductSummaryEntity::toDomain);
+    }
+
+    @Override
+    public Mono<Long> countListed(String categoryId) {
+        return categoryId != null
+                ? reactiveProductRepository.countListedByCategoryId(categoryId)
+                : reactiveProductRepository.countListed();
+    }
+
+    @Override
+    public Flux<ProductSummary> search(String query, String categoryId, int limit, long offset) {
+        Flux<ProductSummaryEntity> hits = categoryId != null
+                ? reactiveProductRepository.searchByCategoryId(query, categoryId, limit, offset)
+                : reactiveProductRepository.search(query, limit, offset);
+        return hits.map(ProductSummaryEntity::toDomain);
+    }
+
+    @Override
+    public Mono<Long> countSearch(String query, String categoryId) {
+        return categoryId != null
+                ? reactiveProductRepository.countSearchByCategoryId(query, categoryId)
+                : reactiveProductRepository.countSearch(query);
+    }
+
+    // The <% operator, which the trigram index serves, compares against the session's
+    // pg_trgm.word_similarity_threshold, so the caller's threshold is set for this transaction
+    // only; a pooled connection never keeps it.
+    @Override
+    public Flux<Product> searchSimilar(String query, double threshold, int limit) {
+        return databaseClient.sql(SIMILARITY_THRESHOLD_SQL)
+                .bind("threshold", String.valueOf(threshold))
+                .then()
+                .thenMany(databaseClient.sql(SEARCH_SIMILAR_SQL)
+                        .bind("query", query)
+                        .bind("limit", limit)
+                        .map(new ProductRowMapper())
+                        .all())
+                .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Flux<Product> streamAll(LocalDateTime updatedSince) {
+        DatabaseClient.GenericExecuteSpec spec = updatedSince != null
+                ? databaseClient.sql("SELECT * FROM products WHERE updated_at > :updatedSince ORDER BY updated_at, id")
+                        .bind("updatedSince", updatedSince)
+                : databaseClient.sql("SELECT * FROM products ORDER BY updated_at, id");
+        // A fetch size makes the driver read the result through a portal in chunks, so rows
+        // are only pulled from Postgres as fast as the subscriber requests them.
+        return spec.filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(new ProductRowMapper())
+                .all();
+    }
+
+    // Written like an imported product, so a changed stock level of an existing product goes
+    // through updateStock rather than overwriting products.quantity.
     @Override
     public Mono<Product> save(Product product) {
-        ProductEntity entity = ProductEntity.fromDomain(product);
-        return reactiveProductRepository.save(entity)
+        return upsertAll(List.of(product))
+                .then(Mono.defer(() -> reactiveProductRepository.findById(product.getId())))
                 .map(ProductEntity::toDomain);
     }
 
+    @Override
+    public Mono<Long> upsertAll(Collection<Product> products) {
+        if (products.isEmpty()) {
+            return Mono.just(0L);
+        }
+        List<Product> rows = List.copyOf(products);
+        Map<String, Quantity> stock = rows.stream()
+                .collect(Collectors.toMap(Product::getId, Product::getQuantity, (first, last) -> last, LinkedHashMap::new));
+        return databaseClient.sql(UPSERT_ALL_SQL)
+                .bind("ids", column(rows, String[]::new, Product::getId))
+                .bind("names", column(rows, String[]::new, Product::getName))
+                .bind("descriptions", column(rows, String[]::new, Product::getDescription))
+                .bind("prices", column(rows, BigDecimal[]::new, product -> product.getPrice().getAmount()))
+                .bind("currencies", column(rows, String[]::new, product -> product.getPrice().getCurrency()))
+                .bind("categoryIds", column(rows, String[]::new, product -> product.getCategory().getId()))
+                .bind("categoryNames", column(rows, String[]::new, product -> product.getCategory().getName()))
+                .bind("quantities", column(rows, Integer[]::new, product -> product.getQuantity().getValue()))
+                .bind("units", column(rows, String[]::new, product -> product.getQuantity().getUnit()))
+                .bind("imageUrls", column(rows, String[]::new, Product::getImageUrl))
+                .map((row, metadata) -> row.get("id", String.class))
+                .all()
+                .collect(Collectors.toCollection(HashSet::new))
+                .doOnNext(restocked -> rows.forEach(product -> invalidate(product.getId())))
+                // A hot SKU's row lags its counter, so its stock is always set.
+                .flatMapMany(restocked -> Flux.fromIterable(stock.keySet())
+                        .filter(id -> restocked.contains(id) || hotStockCounters.isHot(id)))
+                .concatMap(id -> updateStock(id, stock.get(id)))
+                .then(Mono.just((long) rows.size()));
+    }
+
     @Override
     public Mono<Void> deleteById(String id) {
-        return reactiveProductRepository.deleteById(id);
+        return reactiveProductRepository.deleteById(id)
+                .doOnSuccess(unused -> invalidate(id));
     }
 
     @Override
     public Mono<Product> updateStock(String id, Quantity quantity) {
-        return databaseClient.sql("UPDATE products SET quantity = :quantity, updated_at = CURRENT_TIMESTAMP WHERE id = :id AND :quantity >= 0")
+        if (hotStockCounters.isHot(id)) {
+            // The row only catches up with the counter at the next flush.
+            return hotStockCounters.set(id, quantity.getValue(), quantity.getUnit())
+                    .doOnNext(unused -> invalidate(id))
+                    .flatMap(unused -> reactiveProductRepository.findById(id).map(ProductEntity::toDomain))
+                    .doOnNext(product -> product.updateStock(quantity));
+        }
+        // The products row is locked before any shards, in the same order as resharding.
+        return databaseClient.sql("""
+                        WITH previous AS (
+                            SELECT id, quantity FROM products WHERE id = :id FOR UPDATE
+                        )
+                        UPDATE products p SET quantity = :quantity, unit = :unit, updated_at = CURRENT_TIMESTAMP
+                        FROM previous
+                        WHERE p.id = previous.id AND :quantity >= 0
+                        RETURNING p.id, previous.quantity AS previous, p.quantity, p.reorder_threshold
+                        """)
                 .bind("id", id)
                 .bind("quantity", quantity.getValue())
+                .bind("unit", quantity.getUnit())
+                .map(new StockLevelRowMapper())
+                .one()
+                .flatMap(level -> stockShards.set(id, quantity.getValue()).thenReturn(level))
+                .as(transactionalOperator::transactional)
+                .doOnNext(level -> {
+                    invalidate(id);
+                    stockAlertService.stockChanged(List.of(level));
+                })
+                .flatMap(level -> reactiveProductRepository.findById(id).map(ProductEntity::toDomain));
+    }
+
+    @Override
+    public Mono<Product> updateReorderThreshold(String id, int reorderThreshold) {
+        return databaseClient.sql("UPDATE products SET reorder_threshold = :threshold, updated_at = CURRENT_TIMESTAMP WHERE id = :id")
+                .bind("id", id)
+                .bind("threshold", reorderThreshold)
                 .fetch()
                 .rowsUpdated()
+                .doOnNext(rowsUpdated -> invalidate(id))
                 .flatMap(rowsUpdated -> rowsUpdated > 0 ? reactiveProductRepository.findById(id).map(ProductEntity::toDomain) : Mono.empty());
     }
 
+    // Takes the requested quantities off, all or nothing. Hot SKUs come off their in-memory
+    // counters first and are journaled in the same transaction as the rest. The other lines
+    // are one statement, plus one per sharded product: every line is conditional on enough
+    // stock being left when its row is locked, and if any line misses the transaction is
+    // rolled back and all short products are reported. Stock held by other shoppers is not
+    // available; the holder's own holds on these products are turned into the sale. Rows,
+    // and then shards, are locked in product ID order so concurrent checkouts sharing
+    // products cannot deadlock.
+    @Override
+    public Mono<Void> decrementStock(String holderId, Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Mono.empty();
+        }
+        Map<String, Integer> hot = lines(quantities, hotStockCounters::isHot);
+        Map<String, Integer> rest = lines(quantities, id -> !hotStockCounters.isHot(id));
+        return hotStockCounters.take(hot)
+                .then(Mono.defer(() -> stockShards.sharded(rest.keySet())
+                        .flatMap(sharded -> {
+                            Map<String, Integer> rows = lines(rest, id -> !sharded.contains(id));
+                            return decrementRowStock(holderId, rows)
+                                    .flatMap(levels -> decrementShardedStock(lines(rest, sharded::contains))
+                                            .flatMap(shortShards -> {
+                                                Set<String> missing = new HashSet<>(rows.keySet());
+                                                levels.forEach(level -> missing.remove(level.productId()));
+                                                missing.addAll(shortShards);
+                                                return missing.isEmpty()
+                                                        ? hotStockCounters.journal(hot).thenReturn(levels)
+                                                        : Mono.<List<StockLevel>>error(new InsufficientStockException(missing));
+                                            }));
+                        })
+                        .as(transactionalOperator::transactional)
+                        .onErrorResume(ex -> hotStockCounters.giveBack(hot).then(Mono.error(ex)))))
+                .doOnNext(stockAlertService::stockChanged)
+                .doOnSuccess(unused -> quantities.keySet().forEach(this::invalidate))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> incrementStock(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Mono.empty();
+        }
+        Map<String, Integer> hot = lines(quantities, hotStockCounters::isHot);
+        Map<String, Integer> returned = new LinkedHashMap<>();
+        hot.forEach((id, quantity) -> returned.put(id, -quantity));
+        return incrementRowStock(lines(quantities, id -> !hotStockCounters.isHot(id)))
+                .flatMap(levels -> hotStockCounters.journal(returned).thenReturn(levels))
+                .as(transactionalOperator::transactional)
+                .doOnNext(stockAlertService::stockChanged)
+                .then(hotStockCounters.giveBack(hot))
+                .doOnSuccess(unused -> quantities.keySet().forEach(this::invalidate));
+    }
+
+    @Override
+    public Mono<Product> shardStock(String id, int shards) {
+        if (hotStockCounters.isHot(id)) {
+            return Mono.error(new StockNotShardableException(id));
+        }
+        return stockShards.reshard(id, shards)
+                .doOnSuccess(unused -> invalidate(id))
+                .then(Mono.defer(() -> reactiveProductRepository.findById(id).map(ProductEntity::toDomain)));
+    }
+
+    // Returns the stock levels of the products that were decremented; the others were short.
+    // Sharded products are left alone, even if they were sharded after the caller looked:
+    // they are reported short rather than sold twice. The rows are locked by a statement of
+    // their own, before the holder's holds, in the same order as holds and releases lock them.
+    private Mono<List<StockLevel>> decrementRowStock(String holderId, Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        Mono<Void> lock = databaseClient.sql("SELECT id FROM products WHERE id = ANY(:ids) ORDER BY id FOR UPDATE")
+                .bind("ids", quantities.keySet().toArray(String[]::new))
+                .fetch()
+                .all()
+                .then();
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("""
+                        WITH requested AS (
+                            SELECT * FROM unnest(CAST(:ids AS varchar[]), CAST(:quantities AS int[])) AS r(id, quantity)
+                        ), held AS (
+                            DELETE FROM stock_reservations s
+                            WHERE s.holder_id = :holderId AND s.product_id IN (SELECT id FROM requested)
+                            RETURNING s.product_id, s.quantity
+                        )
+                        UPDATE products p
+                        SET quantity = p.quantity - r.quantity,
+                            reserved_quantity = p.reserved_quantity - COALESCE(h.quantity, 0),
+                            updated_at = CURRENT_TIMESTAMP
+                        FROM requested r LEFT JOIN held h ON h.product_id = r.id
+                        WHERE p.id = r.id
+                          AND p.quantity - p.reserved_quantity + COALESCE(h.quantity, 0) >= r.quantity
+                          AND NOT EXISTS (SELECT 1 FROM product_stock_shards s WHERE s.product_id = p.id)
+                        RETURNING p.id, p.quantity + r.quantity AS previous, p.quantity, p.reorder_threshold
+                        """)
+                .bind("ids", quantities.keySet().toArray(String[]::new))
+                .bind("quantities", quantities.values().toArray(Integer[]::new));
+        spec = holderId != null ? spec.bind("holderId", holderId) : spec.bindNull("holderId", String.class);
+        return lock.then(spec.map(new StockLevelRowMapper())
+                .all()
+                .collectList());
+    }
+
+    private Mono<Set<String>> decrementShardedStock(Map<String, Integer> quantities) {
+        return Flux.fromIterable(new TreeMap<>(quantities).entrySet())
+                .concatMap(line -> stockShards.take(line.getKey(), line.getValue())
+                        .filter(taken -> !taken)
+                        .map(unused -> line.getKey()))
+                .collect(Collectors.toSet());
+    }
+
+    // Stock returned to a sharded product goes to its driest shard; the periodic shard sync
+    // checks those against their thresholds.
+    private Mono<List<StockLevel>> incrementRowStock(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return databaseClient.sql("""
+                        WITH returned AS (
+                            SELECT * FROM unnest(CAST(:ids AS varchar[]), CAST(:quantities AS int[])) AS r(id, quantity)
+                        ), driest AS (
+                            SELECT DISTINCT ON (s.product_id) s.product_id, s.shard
+                            FROM product_stock_shards s WHERE s.product_id IN (SELECT id FROM returned)
+                            ORDER BY s.product_id, s.quantity
+                        ), sharded AS (
+                            UPDATE product_stock_shards s SET quantity = s.quantity + r.quantity
+                            FROM driest d JOIN returned r ON r.id = d.product_id
+                            WHERE s.product_id = d.product_id AND s.shard = d.shard
+                        )
+                        UPDATE products p
+                        SET quantity = p.quantity + r.quantity, updated_at = CURRENT_TIMESTAMP
+                        FROM returned r
+                        WHERE p.id = r.id AND p.id NOT IN (SELECT product_id FROM driest)
+                        RETURNING p.id, p.quantity - r.quantity AS previous, p.quantity, p.reorder_threshold
+                        """)
+                .bind("ids", quantities.keySet().toArray(String[]::new))
+                .bind("quantities", quantities.values().toArray(Integer[]::new))
+                .map(new StockLevelRowMapper())
+                .all()
+                .collectList();
+    }
+
+    private static Map<String, Integer> lines(Map<String, Integer> quantities, Predicate<String> include) {
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        quantities.forEach((id, quantity) -> {
+            if (include.test(id)) {
+                lines.put(id, quantity);
+            }
+        });
+        return lines;
+    }
+
     @Override
     public Flux<Product> findAvailable() {
         return databaseClient.sql("SELECT * FROM products WHERE quantity > 0")
-                .map((row, metadata) -> mapToProductEntity(row))
-                .all()
-                .map(ProductEntity::toDomain);
+                .map(new ProductRowMapper())
+                .all();
     }
 
     @Override
     public Flux<Product> findAvailableByCategory(String categoryId) {
         return databaseClient.sql("SELECT * FROM products WHERE category_id = :categoryId AND quantity > 0")
                 .bind("categoryId", categoryId)
-                .map((row, metadata) -> mapToProductEntity(row))
-                .all()
-                .map(ProductEntity::toDomain);
+                .map(new ProductRowMapper())
+                .all();
     }
 
     @Override
     public Flux<Product> findLowStockProducts() {
-        return databaseClient.sql("SELECT * FROM products WHERE quantity <= :threshold")
-                .bind("threshold", LOW_STOCK_THRESHOLD)
-                .map((row, metadata) -> mapToProductEntity(row))
-                .all()
-                .map(ProductEntity::toDomain);
+        return databaseClient.sql("SELECT * FROM products WHERE quantity <= reorder_threshold")
+                .map(new ProductRowMapper())
+                .all();
     }
 
     @Override
     public Flux<Product> findOutOfStockProducts() {
         return databaseClient.sql("SELECT * FROM products WHERE quantity = 0")
-                .map((row, metadata) -> mapToProductEntity(row))
-                .all()
-                .map(ProductEntity::toDomain);
+                .map(new ProductRowMapper())
+                .all();
+    }
+
+    private void invalidate(String id) {
+        productCache.invalidate(id);
     }
 
-    private ProductEntity mapToProductEntity(io.r2dbc.spi.Row row) {
-        return ProductEntity.builder()
-                .id(row.get("id", String.class))
-                .name(row.get("name", String.class))
-                .description(row.get("description", String.class))
-                .categoryId(row.get("category_id", String.class))
-                .categoryName(row.get("category_name", String.class))
-                .price(row.get("price", java.math.BigDecimal.class))
-                .currency(row.get("currency", String.class))
-                .quantity(row.get("quantity", Integer.class))
-                .unit(row.get("unit", String.class))
-                .imageUrl(row.get("image_url", String.class))
-                .createdAt(row.get("created_at", java.time.LocalDateTime.class))
-                .updatedAt(row.get("updated_at", java.time.LocalDateTime.class))
-                .build();
+    private static <T> T[] column(List<Product> rows, IntFunction<T[]> array, Function<Product, T> value) {
+        T[] column = array.apply(rows.size());
+        for (int i = 0; i < column.length; i++) {
+            column[i] = value.apply(rows.get(i));
+        }
+        return column;
     }
 }
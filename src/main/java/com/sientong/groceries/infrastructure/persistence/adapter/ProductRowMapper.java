@@ -0,0 +1,97 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.product.Category;
+import com.sientong.groceries.domain.product.Product;
+
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+
+/**
+ * Maps {@code products} rows straight to {@link Product}. Looking a column up by name scans
+ * the row description on every call, so the column positions are resolved once per result
+ * set (the driver shares one {@link RowMetadata} between its rows) and every row is then read
+ * by index. Columns missing from the query map to {@code null}.
+ *
+ * <p>Create one instance per query; an instance seeing rows of a different result set simply
+ * resolves the positions again.
+ */
+class ProductRowMapper implements BiFunction<Row, RowMetadata, Product> {
+    private static final String[] COLUMNS = {
+            "id", "name", "description", "category_id", "category_name", "price", "currency",
+            "quantity", "unit", "image_url", "created_at", "updated_at"
+    };
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int CATEGORY_ID = 3;
+    private static final int CATEGORY_NAME = 4;
+    private static final int PRICE = 5;
+    private static final int CURRENCY = 6;
+    private static final int QUANTITY = 7;
+    private static final int UNIT = 8;
+    private static final int IMAGE_URL = 9;
+    private static final int CREATED_AT = 10;
+    private static final int UPDATED_AT = 11;
+
+    private volatile Positions positions;
+
+    @Override
+    public Product apply(Row row, RowMetadata metadata) {
+        Positions current = positions;
+        if (current == null || current.metadata != metadata) {
+            current = Positions.resolve(metadata);
+            positions = current;
+        }
+        int[] index = current.index;
+
+        Integer quantity = get(row, index[QUANTITY], Integer.class);
+        return new Product(
+                get(row, index[ID], String.class),
+                get(row, index[NAME], String.class),
+                get(row, index[DESCRIPTION], String.class),
+                Money.of(get(row, index[PRICE], BigDecimal.class), get(row, index[CURRENCY], String.class)),
+                Category.of(get(row, index[CATEGORY_ID], String.class), get(row, index[CATEGORY_NAME], String.class)),
+                Quantity.of(quantity != null ? quantity : 0, get(row, index[UNIT], String.class)),
+                get(row, index[IMAGE_URL], String.class),
+                get(row, index[CREATED_AT], LocalDateTime.class),
+                get(row, index[UPDATED_AT], LocalDateTime.class));
+    }
+
+    private static <T> T get(Row row, int index, Class<T> type) {
+        return index >= 0 ? row.get(index, type) : null;
+    }
+
+    private static final class Positions {
+        private final RowMetadata metadata;
+        private final int[] index;
+
+        private Positions(RowMetadata metadata, int[] index) {
+            this.metadata = metadata;
+            this.index = index;
+        }
+
+        static Positions resolve(RowMetadata metadata) {
+            List<? extends ColumnMetadata> columns = metadata.getColumnMetadatas();
+            Map<String, Integer> byName = new HashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                byName.putIfAbsent(columns.get(i).getName().toLowerCase(Locale.ROOT), i);
+            }
+            int[] index = new int[COLUMNS.length];
+            for (int i = 0; i < COLUMNS.length; i++) {
+                index[i] = byName.getOrDefault(COLUMNS[i], -1);
+            }
+            return new Positions(metadata, index);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import java.time.Duration;
+import java.util.function.UnaryOperator;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.sientong.groceries.domain.inventory.ReservationRepository;
+import com.sientong.groceries.infrastructure.inventory.HotStockCounters;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Every operation changes the reservations ledger and the products.reserved_quantity counter
+ * together in one transaction, so the two cannot drift apart. The products rows are locked
+ * first, in ID order, as checkout does, and only then the holds on them, so a hold cannot be
+ * computed from a previous hold that a concurrent change to the same product is about to
+ * replace. Expiry times come from the database clock, the same one the sweep compares
+ * against. Hot SKUs (see {@link HotStockCounters}) and sharded products are not held at all,
+ * so holds never lock their rows.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReservationRepositoryAdapter implements ReservationRepository {
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final HotStockCounters hotStockCounters;
+
+    // Reports sharded products, which are not held, and locks the products row of the others.
+    // Resharding locks the row too, so the product cannot become sharded until the hold commits.
+    private static final String LOCK_HOLDABLE_SQL = """
+            WITH sharded AS (
+                SELECT EXISTS (SELECT 1 FROM product_stock_shards WHERE product_id = :productId) AS sharded
+            ), locked AS (
+                SELECT id FROM products WHERE id = :productId AND NOT (SELECT sharded FROM sharded) FOR UPDATE
+            )
+            SELECT (SELECT sharded FROM sharded) AS sharded, EXISTS (SELECT 1 FROM locked) AS locked
+            """;
+
+    // Runs once the products row is locked, so the previous hold it reads is the latest one:
+    // two first holds of the same product by one holder cannot both count it as absent.
+    private static final String HOLD_SQL = """
+            WITH previous AS (
+                SELECT quantity FROM stock_reservations
+                WHERE holder_id = :holderId AND product_id = :productId
+                FOR UPDATE
+            ), reserved AS (
+                UPDATE products
+                SET reserved_quantity = reserved_quantity - COALESCE((SELECT quantity FROM previous), 0) + :quantity
+                WHERE id = :productId
+                  AND quantity - reserved_quantity + COALESCE((SELECT quantity FROM previous), 0) >= :quantity
+                RETURNING id
+            ), held AS (
+                INSERT INTO stock_reservations (holder_id, product_id, quantity, expires_at)
+                SELECT :holderId, id, :quantity, LOCALTIMESTAMP + CAST(:ttl AS interval) FROM reserved
+                ON CONFLICT (holder_id, product_id) DO UPDATE
+                SET quantity = EXCLUDED.quantity, expires_at = EXCLUDED.expires_at
+                RETURNING product_id
+            )
+            SELECT EXISTS (SELECT 1 FROM held) AS held
+            """;
+
+    // Locks the products rows of the holds matching the condition; only holds on the locked
+    // products are then released.
+    private static final String LOCK_HELD_SQL = """
+            SELECT id FROM products
+            WHERE id IN (SELECT product_id FROM stock_reservations WHERE %s)
+            ORDER BY id
+            FOR UPDATE
+            """;
+
+    private static final String RELEASE_SQL = """
+            WITH released AS (
+                DELETE FROM stock_reservations WHERE product_id = ANY(:productIds) AND %s RETURNING product_id, quantity
+            ), totals AS (
+                SELECT product_id, SUM(quantity) AS quantity, COUNT(*) AS holds FROM released GROUP BY product_id
+            ), updated AS (
+                UPDATE products p SET reserved_quantity = p.reserved_quantity - t.quantity
+                FROM totals t WHERE p.id = t.product_id
+            )
+            SELECT CAST(COALESCE(SUM(holds), 0) AS BIGINT) AS released FROM totals
+            """;
+
+    private static final String EXPIRED = "expires_at <= LOCALTIMESTAMP";
+
+    private record Holdable(boolean sharded, boolean locked) {
+    }
+
+    @Override
+    public Mono<Boolean> hold(String holderId, String productId, int quantity, Duration ttl) {
+        if (hotStockCounters.isHot(productId)) {
+            return Mono.just(true);
+        }
+        return databaseClient.sql(LOCK_HOLDABLE_SQL)
+                .bind("productId", productId)
+                .map((row, metadata) -> new Holdable(
+                        Boolean.TRUE.equals(row.get("sharded", Boolean.class)),
+                        Boolean.TRUE.equals(row.get("locked", Boolean.class))))
+                .one()
+                .flatMap(holdable -> {
+                    if (holdable.sharded() || !holdable.locked()) {
+                        // Sharded products are not held; missing ones cannot be.
+                        return Mono.just(holdable.sharded());
+                    }
+                    return databaseClient.sql(HOLD_SQL)
+                            .bind("holderId", holderId)
+                            .bind("productId", productId)
+                            .bind("quantity", quantity)
+                            .bind("ttl", ttl.toMillis() + " milliseconds")
+                            .map((row, metadata) -> row.get("held", Boolean.class))
+                            .one();
+                })
+                .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Void> release(String holderId, String productId) {
+        return release("holder_id = :holderId AND product_id = :productId", spec -> spec
+                .bind("holderId", holderId)
+                .bind("productId", productId))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> releaseAll(String holderId) {
+        return release("holder_id = :holderId", spec -> spec.bind("holderId", holderId))
+                .then();
+    }
+
+    // SKIP LOCKED keeps the sweep from queueing behind products that are being held or
+    // checked out at the same moment; their expired holds are picked up by a later sweep.
+    @Override
+    public Mono<Long> releaseExpired(int limit) {
+        return databaseClient.sql("""
+                        SELECT id FROM products
+                        WHERE id IN (SELECT product_id FROM stock_reservations WHERE %s ORDER BY expires_at LIMIT :limit)
+                        ORDER BY id
+                        FOR UPDATE SKIP LOCKED
+                        """.formatted(EXPIRED))
+                .bind("limit", limit)
+                .map((row, metadata) -> row.get("id", String.class))
+                .all()
+                .collectList()
+                .flatMap(productIds -> productIds.isEmpty()
+                        ? Mono.just(0L)
+                        : databaseClient.sql(String.format(RELEASE_SQL, EXPIRED))
+                                .bind("productIds", productIds.toArray(String[]::new))
+                                .map((row, metadata) -> row.get("released", Long.class))
+                                .one())
+                .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Integer> availableToSell(String productId) {
+        if (hotStockCounters.isHot(productId)) {
+            return hotStockCounters.available(productId);
+        }
+        return databaseClient.sql("SELECT CAST(COALESCE((SELECT SUM(quantity) FROM product_stock_shards WHERE product_id = :productId), " +
+                        "quantity - reserved_quantity) AS INTEGER) AS available FROM products WHERE id = :productId")
+                .bind("productId", productId)
+                .map((row, metadata) -> row.get("available", Integer.class))
+                .one();
+    }
+
+    private Mono<Long> release(String condition, UnaryOperator<DatabaseClient.GenericExecuteSpec> bind) {
+        return bind.apply(databaseClient.sql(String.format(LOCK_HELD_SQL, condition)))
+                .map((row, metadata) -> row.get("id", String.class))
+                .all()
+                .collectList()
+                .flatMap(productIds -> productIds.isEmpty()
+                        ? Mono.just(0L)
+                        : bind.apply(databaseClient.sql(String.format(RELEASE_SQL, condition))
+                                        .bind("productIds", productIds.toArray(String[]::new)))
+                                .map((row, metadata) -> row.get("released", Long.class))
+                                .one())
+                .as(transactionalOperator::transactional);
+    }
+}
@@ -2,10 +2,12 @@ package com.sientong.groceries.infrastructure.persistence.adapter;
 
 import com.sientong.groceries.domain.user.User;
 import com.sientong.groceries.domain.user.UserRepository;
+import com.sientong.groceries.domain.user.UserRole;
 import com.sientong.groceries.infrastructure.persistence.entity.UserEntity;
 import com.sientong.groceries.infrastructure.persistence.repository.ReactiveUserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Component
@@ -30,4 +32,10 @@ public class UserRepositoryAdapter implements UserRepository {
         return userRepository.findByEmail(email)
                 .map(UserEntity::toDomain);
     }
+
+    @Override
+    public Flux<User> findByRole(UserRole role) {
+        return userRepository.findByRole(role)
+                .map(UserEntity::toDomain);
+    }
 }
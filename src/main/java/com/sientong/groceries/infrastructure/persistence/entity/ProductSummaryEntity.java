@@ -0,0 +1,44 @@
+package com.sientong.groceries.infrastructure.persistence.entity;
+
+import java.math.BigDecimal;
+
+import org.springframework.data.relational.core.mapping.Column;
+
+import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.domain.product.ProductSummary;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Projection of the {@code products} columns needed by listings; populated by queries
+ * selecting {@link com.sientong.groceries.infrastructure.persistence.repository.ReactiveProductRepository#SUMMARY_COLUMNS}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSummaryEntity {
+    private String id;
+    private String name;
+    private BigDecimal price;
+    private String currency;
+    private String unit;
+    @Column("image_url")
+    private String imageUrl;
+    @Column("in_stock")
+    private boolean inStock;
+
+    public ProductSummary toDomain() {
+        return ProductSummary.builder()
+                .id(id)
+                .name(name)
+                .price(Money.of(price, currency))
+                .unit(unit)
+                .imageUrl(imageUrl)
+                .inStock(inStock)
+                .build();
+    }
+}
@@ -18,6 +18,11 @@ public interface ReactiveOrderRepository extends ReactiveCrudRepository<OrderEnt
     @Modifying
     @Query("UPDATE orders SET status = :status, updated_at = CURRENT_TIMESTAMP WHERE id = :id")
     Mono<Boolean> updateStatus(String id, OrderStatus status);
+
+    // Only the call that actually cancels the order gets true, so its sales are taken back once.
+    @Modifying
+    @Query("UPDATE orders SET status = 'CANCELLED', updated_at = CURRENT_TIMESTAMP WHERE id = :id AND status <> 'CANCELLED'")
+    Mono<Boolean> cancel(String id);
     
     @Modifying
     @Query("UPDATE orders SET delivery_address = :address, delivery_phone = :phone, " +
@@ -1,11 +1,68 @@
 package com.sientong.groceries.infrastructure.persistence.repository;
 
 import com.sientong.groceries.infrastructure.persistence.entity.ProductEntity;
+import com.sientong.groceries.infrastructure.persistence.entity.ProductSummaryEntity;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Repository
 public interface ReactiveProductRepository extends ReactiveCrudRepository<ProductEntity, String> {
+    String SUMMARY_COLUMNS = "id, name, price, currency, unit, image_url, quantity > 0 AS in_stock";
+
     Flux<ProductEntity> findByCategoryId(String categoryId);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM products WHERE category_id = :categoryId ORDER BY name, id")
+    Flux<ProductSummaryEntity> findSummariesByCategoryId(String categoryId);
+
+    // Listing totals come from the trigger-maintained category_product_counts (V13), so a page
+    // does not pay for a COUNT(*) over products.
+    @Query("SELECT CAST(COALESCE(SUM(product_count), 0) AS BIGINT) FROM category_product_counts")
+    Mono<Long> countListed();
+
+    @Query("SELECT COALESCE((SELECT product_count FROM category_product_counts WHERE category_id = :categoryId), 0)")
+    Mono<Long> countListedByCategoryId(String categoryId);
+
+    @Query("SELECT * FROM products WHERE id = ANY(:ids)")
+    Flux<ProductEntity> findAllByIdIn(String[] ids);
+
+    // A sharded product's stock is the sum of its shards; products.quantity only catches up
+    // with them periodically.
+    @Query("SELECT CAST(COALESCE((SELECT SUM(quantity) FROM product_stock_shards WHERE product_id = :id), quantity) AS INTEGER) " +
+           "FROM products WHERE id = :id")
+    Mono<Integer> findQuantityById(String id);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM products ORDER BY name, id LIMIT :limit OFFSET :offset")
+    Flux<ProductSummaryEntity> findPage(int limit, long offset);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM products WHERE category_id = :categoryId " +
+           "ORDER BY name, id LIMIT :limit OFFSET :offset")
+    Flux<ProductSummaryEntity> findPageByCategoryId(String categoryId, int limit, long offset);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM products WHERE (name, id) > (:name, :id) ORDER BY name, id LIMIT :limit")
+    Flux<ProductSummaryEntity> findPageAfter(String name, String id, int limit);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM products WHERE category_id = :categoryId AND (name, id) > (:name, :id) " +
+           "ORDER BY name, id LIMIT :limit")
+    Flux<ProductSummaryEntity> findPageByCategoryIdAfter(String categoryId, String name, String id, int limit);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM products WHERE search_vector @@ websearch_to_tsquery('english', :query) " +
+           "ORDER BY ts_rank(search_vector, websearch_to_tsquery('english', :query)) DESC, id " +
+           "LIMIT :limit OFFSET :offset")
+    Flux<ProductSummaryEntity> search(String query, int limit, long offset);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM products WHERE category_id = :categoryId " +
+           "AND search_vector @@ websearch_to_tsquery('english', :query) " +
+           "ORDER BY ts_rank(search_vector, websearch_to_tsquery('english', :query)) DESC, id " +
+           "LIMIT :limit OFFSET :offset")
+    Flux<ProductSummaryEntity> searchByCategoryId(String query, String categoryId, int limit, long offset);
+
+    @Query("SELECT COUNT(*) FROM products WHERE search_vector @@ websearch_to_tsquery('english', :query)")
+    Mono<Long> countSearch(String query);
+
+    @Query("SELECT COUNT(*) FROM products WHERE category_id = :categoryId " +
+           "AND search_vector @@ websearch_to_tsquery('english', :query)")
+    Mono<Long> countSearchByCategoryId(String query, String categoryId);
 }
@@ -1,14 +1,18 @@
 package com.sientong.groceries.infrastructure.persistence.repository;
 
+import com.sientong.groceries.domain.user.UserRole;
 import com.sientong.groceries.infrastructure.persistence.entity.UserEntity;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
 public interface ReactiveUserRepository extends ReactiveCrudRepository<UserEntity, String> {
     Mono<UserEntity> findByEmail(String email);
+
+    Flux<UserEntity> findByRole(UserRole role);
     
     @Query("SELECT * FROM users WHERE email = :email AND password = :password")
     Mono<UserEntity> findByEmailAndPassword(String email, String password);
@@ -0,0 +1,9 @@
+-- Full-text search document for products, kept in sync by Postgres on every write.
+-- Names weigh more than descriptions so title matches rank first.
+ALTER TABLE products
+ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(name, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(description, '')), 'B')
+) STORED;
+
+CREATE INDEX idx_products_search_vector ON products USING GIN (search_vector);
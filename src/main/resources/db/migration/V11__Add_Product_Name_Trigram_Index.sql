@@ -0,0 +1,5 @@
+-- Trigram index for typo-tolerant matching on product names
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_products_name_trgm ON products USING GIN (name gin_trgm_ops);
+
@@ -0,0 +1,2 @@
+-- Supports incremental catalog exports ordered and filtered by last update
+CREATE INDEX idx_products_updated_at_id ON products(updated_at, id);
@@ -0,0 +1,46 @@
+-- Per-category product and in-stock counts for browse facets, maintained by a trigger so
+-- every write path (checkout, imports, admin edits) keeps them current and reads never
+-- have to scan products.
+CREATE TABLE category_product_counts (
+    category_id VARCHAR(36) PRIMARY KEY REFERENCES categories(id) ON DELETE CASCADE,
+    product_count BIGINT NOT NULL DEFAULT 0,
+    in_stock_count BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO category_product_counts (category_id, product_count, in_stock_count)
+SELECT category_id, COUNT(*), COUNT(*) FILTER (WHERE quantity > 0)
+FROM products
+GROUP BY category_id;
+
+CREATE FUNCTION update_category_product_counts() RETURNS trigger AS $$
+BEGIN
+    -- Most stock updates neither move a product nor take it in or out of stock; skip them
+    -- so checkout does not contend on the category row.
+    IF TG_OP = 'UPDATE' THEN
+        IF NEW.category_id = OLD.category_id AND (NEW.quantity > 0) = (OLD.quantity > 0) THEN
+            RETURN NULL;
+        END IF;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        UPDATE category_product_counts
+        SET product_count = product_count - 1,
+            in_stock_count = in_stock_count - CASE WHEN OLD.quantity > 0 THEN 1 ELSE 0 END
+        WHERE category_id = OLD.category_id;
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO category_product_counts (category_id, product_count, in_stock_count)
+        VALUES (NEW.category_id, 1, CASE WHEN NEW.quantity > 0 THEN 1 ELSE 0 END)
+        ON CONFLICT (category_id) DO UPDATE
+        SET product_count = category_product_counts.product_count + 1,
+            in_stock_count = category_product_counts.in_stock_count + EXCLUDED.in_stock_count;
+    END IF;
+
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_products_category_counts
+AFTER INSERT OR DELETE OR UPDATE OF category_id, quantity ON products
+FOR EACH ROW EXECUTE FUNCTION update_category_product_counts();
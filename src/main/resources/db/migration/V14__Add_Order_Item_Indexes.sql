@@ -0,0 +1,3 @@
+-- Rebuilding sales rankings at startup reads the recent orders window and their items
+CREATE INDEX idx_orders_created_at ON orders(created_at);
+CREATE INDEX idx_order_items_order_id ON order_items(order_id);
@@ -0,0 +1,15 @@
+-- Time-limited stock holds taken by carts and checkouts. The sum of a product's holds is
+-- kept next to its stock in reserved_quantity, so available-to-sell is a single row read
+-- and every hold or sale can be checked and applied in one conditional UPDATE.
+ALTER TABLE products ADD COLUMN reserved_quantity INTEGER NOT NULL DEFAULT 0;
+
+CREATE TABLE stock_reservations (
+    holder_id VARCHAR(255) NOT NULL,
+    product_id VARCHAR(36) NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    quantity INTEGER NOT NULL CHECK (quantity > 0),
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (holder_id, product_id)
+);
+
+CREATE INDEX idx_stock_reservations_expires_at ON stock_reservations(expires_at);
@@ -0,0 +1,11 @@
+-- Write-behind stock changes for hot SKUs: sales (positive) and returns or restocks
+-- (negative) are appended here without locking the products row, and folded into
+-- products.quantity in batches by HotStockCounters.flush.
+CREATE TABLE stock_journal (
+    id BIGSERIAL PRIMARY KEY,
+    product_id VARCHAR(36) NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    quantity INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_stock_journal_product_id ON stock_journal(product_id);
@@ -0,0 +1,9 @@
+-- Stock of hot products split across sub-rows, so concurrent sales lock one shard each
+-- instead of queueing on the products row. A product with shards has its stock in them;
+-- products.quantity is kept in step by a periodic sync.
+CREATE TABLE product_stock_shards (
+    product_id VARCHAR(36) NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    shard INTEGER NOT NULL CHECK (shard >= 0),
+    quantity INTEGER NOT NULL CHECK (quantity >= 0),
+    PRIMARY KEY (product_id, shard)
+);
@@ -0,0 +1,6 @@
+-- Per-product reorder threshold, replacing the fixed low-stock threshold of 5. The partial
+-- index holds only products at or below their threshold, so listing them does not scan the
+-- whole table.
+ALTER TABLE products ADD COLUMN reorder_threshold INTEGER NOT NULL DEFAULT 5 CHECK (reorder_threshold >= 0);
+
+CREATE INDEX idx_products_low_stock ON products(id) WHERE quantity <= reorder_threshold;
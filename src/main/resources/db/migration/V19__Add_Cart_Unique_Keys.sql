@@ -0,0 +1,26 @@
+-- One cart per user and one line per product in a cart, so adding to a cart can be a single
+-- upsert. A user with several carts could not load any of them, so only the most recently
+-- updated is kept; duplicate lines are merged into one.
+DELETE FROM cart_items WHERE cart_id IN (
+    SELECT id FROM (
+        SELECT id, ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY updated_at DESC, id) AS n FROM carts
+    ) ranked WHERE n > 1
+);
+
+DELETE FROM carts WHERE id IN (
+    SELECT id FROM (
+        SELECT id, ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY updated_at DESC, id) AS n FROM carts
+    ) ranked WHERE n > 1
+);
+
+WITH merged AS (
+    SELECT MIN(id) AS id, SUM(quantity) AS quantity FROM cart_items
+    GROUP BY cart_id, product_id HAVING COUNT(*) > 1
+)
+UPDATE cart_items ci SET quantity = m.quantity FROM merged m WHERE ci.id = m.id;
+
+DELETE FROM cart_items ci USING cart_items kept
+WHERE ci.cart_id = kept.cart_id AND ci.product_id = kept.product_id AND ci.id > kept.id;
+
+CREATE UNIQUE INDEX uq_carts_user_id ON carts(user_id);
+CREATE UNIQUE INDEX uq_cart_items_cart_product ON cart_items(cart_id, product_id);
@@ -0,0 +1,12 @@
+-- Durability journal for the write-back cart store: each cart change appends a snapshot of
+-- the whole cart, which takes no row locks and touches no cart indexes. A user's snapshots
+-- are deleted once the cart has been written to carts/cart_items; the latest one left over
+-- after a crash is what the cart is restored from.
+CREATE TABLE cart_journal (
+    id BIGSERIAL PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    cart JSONB NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_cart_journal_user ON cart_journal(user_id, id);
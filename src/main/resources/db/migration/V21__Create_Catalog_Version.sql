@@ -0,0 +1,44 @@
+-- Catalog-wide version behind listing ETags, bumped by triggers on every write that can change
+-- a listing, so all instances agree on it and it survives restarts. It is bumped at most once
+-- per transaction and commits with the write, so a reader never sees a version newer than the
+-- rows it reads afterwards. It starts from the clock so a rebuilt database does not reissue
+-- old ETags.
+CREATE TABLE catalog_version (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    version BIGINT NOT NULL,
+    bumped_by BIGINT
+);
+
+INSERT INTO catalog_version (version) VALUES (CAST(EXTRACT(EPOCH FROM CURRENT_TIMESTAMP) * 1000 AS BIGINT));
+
+CREATE FUNCTION bump_catalog_version() RETURNS trigger AS $$
+BEGIN
+    UPDATE catalog_version SET version = version + 1, bumped_by = txid_current()
+    WHERE bumped_by IS DISTINCT FROM txid_current();
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_products_catalog_version_rows
+AFTER INSERT OR DELETE OR TRUNCATE ON products
+FOR EACH STATEMENT EXECUTE FUNCTION bump_catalog_version();
+
+-- Stock writes only show in listings when a product goes in or out of stock; the others,
+-- checkout included, leave the version row alone.
+CREATE TRIGGER trg_products_catalog_version_update
+AFTER UPDATE ON products
+FOR EACH ROW
+WHEN (OLD.name IS DISTINCT FROM NEW.name
+      OR OLD.description IS DISTINCT FROM NEW.description
+      OR OLD.price IS DISTINCT FROM NEW.price
+      OR OLD.currency IS DISTINCT FROM NEW.currency
+      OR OLD.unit IS DISTINCT FROM NEW.unit
+      OR OLD.image_url IS DISTINCT FROM NEW.image_url
+      OR OLD.category_id IS DISTINCT FROM NEW.category_id
+      OR OLD.category_name IS DISTINCT FROM NEW.category_name
+      OR (OLD.quantity > 0) <> (NEW.quantity > 0))
+EXECUTE FUNCTION bump_catalog_version();
+
+CREATE TRIGGER trg_categories_catalog_version
+AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON categories
+FOR EACH STATEMENT EXECUTE FUNCTION bump_catalog_version();
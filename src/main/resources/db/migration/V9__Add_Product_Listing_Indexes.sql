@@ -0,0 +1,3 @@
+-- Composite indexes backing keyset pagination over the (name, id) catalog ordering
+CREATE INDEX idx_products_name_id ON products(name, id);
+CREATE INDEX idx_products_category_name_id ON products(category_id, name, id);
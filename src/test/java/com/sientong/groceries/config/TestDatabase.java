@@ -0,0 +1,107 @@
+package com.sientong.groceries.config;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+
+/**
+ * The groceries_test database the test profile points at, for tests of SQL that only a real
+ * Postgres can run. The schema is rebuilt from the migrations once per test run. Tests that
+ * use it are skipped when the database is not reachable; override the location with
+ * {@code -Dtest.db.host}, {@code -Dtest.db.port} and {@code -Dtest.db.name}.
+ */
+public final class TestDatabase {
+    private static final String HOST = System.getProperty("test.db.host", "localhost");
+    private static final int PORT = Integer.getInteger("test.db.port", 5432);
+    private static final String NAME = System.getProperty("test.db.name", "groceries_test");
+    private static final String USER = "postgres";
+    private static final String PASSWORD = "postgres";
+    private static final String JDBC_URL = "jdbc:postgresql://" + HOST + ":" + PORT + "/" + NAME;
+
+    private static Boolean available;
+    private static ConnectionFactory connectionFactory;
+
+    private TestDatabase() {
+    }
+
+    /** Skips the calling test unless the database is reachable; migrates it on first use. */
+    public static synchronized void assumeAvailable() {
+        if (available == null) {
+            available = reachable();
+            if (available) {
+                Flyway flyway = Flyway.configure()
+                        .dataSource(JDBC_URL, USER, PASSWORD)
+                        .locations("classpath:db/migration")
+                        .cleanDisabled(false)
+                        .load();
+                flyway.clean();
+                flyway.migrate();
+            }
+        }
+        assumeTrue(available, "PostgreSQL is not reachable at " + JDBC_URL);
+    }
+
+    public static synchronized ConnectionFactory connectionFactory() {
+        if (connectionFactory == null) {
+            connectionFactory = new ConnectionPool(ConnectionPoolConfiguration.builder(
+                    new PostgresqlConnectionFactory(PostgresqlConnectionConfiguration.builder()
+                            .host(HOST)
+                            .port(PORT)
+                            .database(NAME)
+                            .username(USER)
+                            .password(PASSWORD)
+                            .build()))
+                    .maxSize(32)
+                    .build());
+        }
+        return connectionFactory;
+    }
+
+    public static DatabaseClient databaseClient() {
+        return DatabaseClient.create(connectionFactory());
+    }
+
+    /** A Spring Data repository of the given type, as the application context would create it. */
+    public static <T> T repository(Class<T> type) {
+        return new R2dbcRepositoryFactory(new R2dbcEntityTemplate(connectionFactory())).getRepository(type);
+    }
+
+    public static TransactionalOperator transactionalOperator() {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory()));
+    }
+
+    /** A plain JDBC connection, for holding locks from outside the code under test. */
+    public static Connection jdbcConnection() throws SQLException {
+        return DriverManager.getConnection(JDBC_URL, USER, PASSWORD);
+    }
+
+    /** Empties the given tables, and whatever references them. */
+    public static void truncate(String... tables) {
+        databaseClient().sql("TRUNCATE " + String.join(", ", tables) + " CASCADE")
+                .then()
+                .block();
+    }
+
+    private static boolean reachable() {
+        try (Connection connection = jdbcConnection()) {
+            return connection.isValid(2);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.sientong.groceries.controller;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.sientong.groceries.api.controller.CategoryController;
+import com.sientong.groceries.config.TestConfig;
+import com.sientong.groceries.config.TestSecurityConfig;
+import com.sientong.groceries.domain.category.Category;
+import com.sientong.groceries.domain.category.CategoryFacet;
+import com.sientong.groceries.domain.category.CategoryRepository;
+import com.sientong.groceries.domain.product.CatalogVersion;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(SpringExtension.class)
+@WebFluxTest(CategoryController.class)
+@Import({TestConfig.class, TestSecurityConfig.class})
+@ActiveProfiles("test")
+class CategoryControllerTest {
+
+    @MockBean
+    private CategoryRepository categoryRepository;
+
+    @MockBean
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        when(catalogVersion.etag()).thenReturn(Mono.just("W/\"1\""));
+        when(categoryRepository.findCatalogVersion()).thenReturn(Mono.just(1L));
+    }
+
+    @Test
+    void shouldTagCategoriesWithVersionOfTheirSnapshot() {
+        when(catalogVersion.etag()).thenReturn(Mono.just("W/\"2\""));
+        when(categoryRepository.findAll()).thenReturn(Flux.just(new Category("cat-1", "Fruits")));
+
+        webTestClient.get()
+                .uri("/api/v1/categories")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "W/\"1\"")
+                .expectBody()
+                .jsonPath("$[0].name").isEqualTo("Fruits");
+    }
+
+    @Test
+    void shouldGetCategoryFacets() {
+        when(categoryRepository.findFacets()).thenReturn(Flux.just(
+                CategoryFacet.builder()
+                        .category(new Category("cat-1", "Fruits"))
+                        .productCount(12)
+                        .inStockCount(9)
+                        .build(),
+                CategoryFacet.builder()
+                        .category(new Category("cat-2", "Dairy"))
+                        .productCount(0)
+                        .inStockCount(0)
+                        .build()));
+
+        webTestClient.get()
+                .uri("/api/v1/categories/facets")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "W/\"1\"")
+                .expectBody()
+                .jsonPath("$[0].category.name").isEqualTo("Fruits")
+                .jsonPath("$[0].productCount").isEqualTo(12)
+                .jsonPath("$[0].inStockCount").isEqualTo(9)
+                .jsonPath("$[1].category.id").isEqualTo("cat-2")
+                .jsonPath("$[1].productCount").isEqualTo(0);
+    }
+
+    @Test
+    void shouldAnswerNotModifiedForUnchangedFacets() {
+        webTestClient.get()
+                .uri("/api/v1/categories/facets")
+                .header("If-None-Match", "W/\"1\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        verify(categoryRepository, never()).findFacets();
+    }
+}
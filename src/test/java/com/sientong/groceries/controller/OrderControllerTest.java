@@ -8,6 +8,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -80,8 +81,8 @@ class OrderControllerTest {
                 .imageUrl("http://example.com/orange.jpg")
                 .build();
 
-        when(productService.findById("prod1")).thenReturn(Mono.just(testProduct1));
-        when(productService.findById("prod2")).thenReturn(Mono.just(testProduct2));
+        when(productService.findAllByIds(List.of("prod1", "prod2")))
+                .thenReturn(Mono.just(Map.of("prod1", testProduct1, "prod2", testProduct2)));
 
         items = new ArrayList<>();
         items.add(OrderItem.of(
@@ -1,17 +1,22 @@
 package com.sientong.groceries.controller;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
@@ -19,19 +24,36 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import com.sientong.groceries.api.controller.ProductController;
+import com.sientong.groceries.api.request.ProductImportRow;
 import com.sientong.groceries.api.request.ProductRequest;
+import com.sientong.groceries.api.request.ReorderThresholdRequest;
+import com.sientong.groceries.api.request.StockShardsRequest;
 import com.sientong.groceries.api.request.StockUpdateRequest;
+import com.sientong.groceries.api.response.ProductImportReportResponse;
 import com.sientong.groceries.api.response.ProductResponse;
+import com.sientong.groceries.api.response.ProductSummaryResponse;
+import com.sientong.groceries.api.response.StockAlertResponse;
 import com.sientong.groceries.config.TestConfig;
 import com.sientong.groceries.config.TestSecurityConfig;
 import com.sientong.groceries.domain.common.Money;
 import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.inventory.StockAlert;
+import com.sientong.groceries.domain.inventory.StockAlertService;
+import com.sientong.groceries.domain.inventory.StockLevel;
+import com.sientong.groceries.domain.product.CatalogVersion;
 import com.sientong.groceries.domain.product.Category;
 import com.sientong.groceries.domain.product.Product;
+import com.sientong.groceries.domain.product.ProductImportLine;
+import com.sientong.groceries.domain.product.ProductImportReport;
+import com.sientong.groceries.domain.product.ProductPage;
 import com.sientong.groceries.domain.product.ProductService;
+import com.sientong.groceries.domain.product.ProductSuggestion;
+import com.sientong.groceries.domain.product.ProductSummary;
+import com.sientong.groceries.domain.product.StockNotShardableException;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 @ExtendWith(SpringExtension.class)
 @WebFluxTest(ProductController.class)
@@ -42,9 +64,20 @@ class ProductControllerTest {
     @MockBean
     private ProductService productService;
 
+    @MockBean
+    private StockAlertService stockAlertService;
+
     @Autowired
     private WebTestClient webTestClient;
 
+    @MockBean
+    private CatalogVersion catalogVersion;
+
+    @BeforeEach
+    void setUp() {
+        when(catalogVersion.etag()).thenReturn(Mono.just("W/\"1\""));
+    }
+
     private Category createTestCategory() {
         return Category.of("fruits", "Fruits");
     }
@@ -66,17 +99,229 @@ class ProductControllerTest {
     @Test
     void shouldGetAllProducts() {
         Product product = createTestProduct();
-        when(productService.findAll()).thenReturn(Flux.just(product));
+        when(productService.findPage(null, 0, 12)).thenReturn(Mono.just(ProductPage.builder()
+                .content(List.of(ProductSummary.fromProduct(product)))
+                .totalElements(1)
+                .last(true)
+                .build()));
 
         webTestClient.get()
                 .uri("/api/v1/products")
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
-                .expectBodyList(ProductResponse.class)
+                .expectBody()
+                .jsonPath("$.content[0].name").isEqualTo("Organic Apples")
+                .jsonPath("$.content[0].inStock").isEqualTo(true)
+                .jsonPath("$.content[0].description").doesNotExist();
+    }
+
+    @Test
+    void shouldGetProductsAfterCursor() {
+        Product product = createTestProduct();
+        when(productService.findPageAfter(null, "abc", 1)).thenReturn(Mono.just(ProductPage.builder()
+                .content(List.of(ProductSummary.fromProduct(product)))
+                .totalElements(5)
+                .nextCursor("def")
+                .build()));
+
+        webTestClient.get()
+                .uri("/api/v1/products?cursor=abc&size=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content.length()").isEqualTo(1)
+                .jsonPath("$.next").isEqualTo("def")
+                .jsonPath("$.last").isEqualTo(false);
+    }
+
+    @Test
+    void shouldSearchProductsByQuery() {
+        Product product = createTestProduct();
+        when(productService.search("apples", "fruits", 0, 12)).thenReturn(Mono.just(ProductPage.builder()
+                .content(List.of(ProductSummary.fromProduct(product)))
+                .totalElements(1)
+                .last(true)
+                .build()));
+
+        webTestClient.get()
+                .uri("/api/v1/products?query=apples&categoryId=fruits")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[0].name").isEqualTo("Organic Apples")
+                .jsonPath("$.totalElements").isEqualTo(1);
+    }
+
+    @Test
+    void shouldSuggestProductsByPrefix() {
+        when(productService.suggest("org", 10)).thenReturn(Flux.just(
+                new ProductSuggestion(ProductSuggestion.Type.PRODUCT, "1", "Organic Apples")));
+
+        webTestClient.get()
+                .uri("/api/v1/products/suggest?prefix=org")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].type").isEqualTo("PRODUCT")
+                .jsonPath("$[0].text").isEqualTo("Organic Apples");
+    }
+
+    @Test
+    void shouldExportCatalogAsNdjson() {
+        LocalDateTime since = LocalDateTime.of(2025, 3, 1, 0, 0);
+        when(productService.export(since)).thenReturn(Flux.just(createTestProduct(), createTestProduct()));
+
+        webTestClient.get()
+                .uri("/api/v1/products/export?updatedSince=2025-03-01T00:00:00")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(ProductResponse.class)
+                .getResponseBody()
+                .as(StepVerifier::create)
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER")
+    void shouldImportProductsFromCsv() {
+        when(productService.importProducts(any())).thenAnswer(invocation -> {
+            Flux<ProductImportLine> lines = invocation.getArgument(0);
+            return lines.collectList().map(parsed -> ProductImportReport.builder()
+                    .batch(1)
+                    .imported((int) parsed.stream().filter(ProductImportLine::isValid).count())
+                    .failed((int) parsed.stream().filter(line -> !line.isValid()).count())
+                    .errors(parsed.stream()
+                            .filter(line -> !line.isValid())
+                            .map(line -> new ProductImportReport.LineError(line.getLine(), line.getError()))
+                            .toList())
+                    .build()).flux();
+        });
+
+        String csv = ProductImportRow.CSV_HEADER + "\n" +
+                ",\"Apples, Organic\",Fresh,5.99,USD,fruits,Fruits,100,kg,\n" +
+                "2,Milk,,,USD,dairy,Dairy,10,l,\n";
+
+        webTestClient.post()
+                .uri("/api/v1/products/import")
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(csv)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(ProductImportReportResponse.class)
+                .getResponseBody()
+                .as(StepVerifier::create)
+                .expectNextMatches(report ->
+                    report.getImported() == 1 &&
+                    report.getFailed() == 1 &&
+                    report.getErrors().get(0).getLine() == 3
+                )
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldAnswerNotModifiedWhileCatalogIsUnchanged() {
+        String etag = "W/\"1\"";
+
+        webTestClient.get()
+                .uri("/api/v1/products")
+                .header("If-None-Match", etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("ETag", etag)
+                .expectBody().isEmpty();
+
+        verify(productService, never()).findPage(null, 0, 12);
+    }
+
+    @Test
+    void shouldReturnFreshListingAfterCatalogChanges() {
+        when(catalogVersion.etag()).thenReturn(Mono.just("W/\"2\""));
+        when(productService.findPage(null, 0, 12)).thenReturn(Mono.just(ProductPage.builder()
+                .content(List.of())
+                .totalElements(0)
+                .last(true)
+                .build()));
+
+        webTestClient.get()
+                .uri("/api/v1/products")
+                .header("If-None-Match", "W/\"1\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "W/\"2\"");
+    }
+
+    @Test
+    void shouldAnswerNotModifiedForUnchangedProduct() {
+        when(productService.findById("1")).thenReturn(Mono.just(createTestProduct()));
+
+        String etag = webTestClient.get()
+                .uri("/api/v1/products/1")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(ProductResponse.class)
+                .getResponseHeaders()
+                .getETag();
+
+        webTestClient.get()
+                .uri("/api/v1/products/1")
+                .header("If-None-Match", etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void shouldGetBestsellers() {
+        when(productService.findBestsellers("fruits", 7, 5)).thenReturn(Flux.just(createTestProduct()));
+
+        webTestClient.get()
+                .uri("/api/v1/products/bestsellers?categoryId=fruits&window=7d&limit=5")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].name").isEqualTo("Organic Apples");
+    }
+
+    @Test
+    void shouldGetProductsBoughtTogether() {
+        when(productService.findBoughtTogether("1", 3)).thenReturn(Flux.just(createTestProduct()));
+
+        webTestClient.get()
+                .uri("/api/v1/products/1/bought-together?limit=3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ProductSummaryResponse.class)
                 .hasSize(1);
     }
 
+    @Test
+    void shouldReturn400WhenBestsellerWindowIsTooLong() {
+        webTestClient.get()
+                .uri("/api/v1/products/bestsellers?window=90d")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void shouldReturn400WhenCursorIsMalformed() {
+        when(productService.findPageAfter(null, "bad", 12))
+                .thenReturn(Mono.error(new IllegalArgumentException("Malformed cursor: bad")));
+
+        webTestClient.get()
+                .uri("/api/v1/products?cursor=bad")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     void shouldGetProductById() {
         Product product = createTestProduct();
@@ -94,14 +339,15 @@ class ProductControllerTest {
     void shouldGetProductsByCategory() {
         Product product = createTestProduct();
         Category category = createTestCategory();
-        when(productService.findByCategory(category.getId())).thenReturn(Flux.just(product));
+        when(productService.findSummariesByCategory(category.getId()))
+                .thenReturn(Flux.just(ProductSummary.fromProduct(product)));
 
         webTestClient.get()
                 .uri("/api/v1/products/category/" + category.getId())
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
-                .expectBodyList(ProductResponse.class)
+                .expectBodyList(ProductSummaryResponse.class)
                 .hasSize(1);
     }
 
@@ -135,6 +381,94 @@ class ProductControllerTest {
                 .expectBody(ProductResponse.class);
     }
 
+    @Test
+    @WithMockUser(roles = "SELLER")
+    void shouldShardStock() {
+        Product product = createTestProduct();
+
+        StockShardsRequest request = new StockShardsRequest();
+        request.setShards(8);
+
+        when(productService.shardStock("1", 8)).thenReturn(Mono.just(product));
+
+        webTestClient.put()
+                .uri("/api/v1/products/1/stock/shards")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ProductResponse.class);
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER")
+    void shouldRejectTooManyStockShards() {
+        StockShardsRequest request = new StockShardsRequest();
+        request.setShards(65);
+
+        webTestClient.put()
+                .uri("/api/v1/products/1/stock/shards")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER")
+    void shouldRejectShardingStockCountedInMemory() {
+        StockShardsRequest request = new StockShardsRequest();
+        request.setShards(8);
+
+        when(productService.shardStock("1", 8)).thenReturn(Mono.error(new StockNotShardableException("1")));
+
+        webTestClient.put()
+                .uri("/api/v1/products/1/stock/shards")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER")
+    void shouldUpdateReorderThreshold() {
+        Product product = createTestProduct();
+
+        ReorderThresholdRequest request = new ReorderThresholdRequest();
+        request.setReorderThreshold(20);
+
+        when(productService.updateReorderThreshold("1", 20)).thenReturn(Mono.just(product));
+
+        webTestClient.put()
+                .uri("/api/v1/products/1/reorder-threshold")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ProductResponse.class);
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER")
+    void shouldStreamStockAlerts() {
+        StockAlert low = StockAlert.of(new StockLevel("1", 6, 4, 5)).orElseThrow();
+        when(stockAlertService.stream()).thenReturn(Flux.just(low));
+
+        webTestClient.get()
+                .uri("/api/v1/products/stock-alerts")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(StockAlertResponse.class)
+                .getResponseBody()
+                .as(StepVerifier::create)
+                .expectNextMatches(alert -> alert.getProductId().equals("1")
+                        && alert.getType().equals("LOW")
+                        && alert.getQuantity() == 4)
+                .verifyComplete();
+    }
+
     @Test
     @WithMockUser(roles = "SELLER")
     void shouldCreateProduct() {
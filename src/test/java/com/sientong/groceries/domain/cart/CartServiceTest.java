@@ -1,26 +1,35 @@
 package com.sientong.groceries.domain.cart;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import com.sientong.groceries.domain.common.Money;
 import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.inventory.InventoryService;
+import com.sientong.groceries.domain.product.InsufficientStockException;
 import com.sientong.groceries.domain.product.Category;
 import com.sientong.groceries.domain.product.Product;
 import com.sientong.groceries.domain.product.ProductService;
+import com.sientong.groceries.infrastructure.concurrency.MutationLanes;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
@@ -33,7 +42,9 @@ class CartServiceTest {
     @Mock
     private ProductService productService;
 
-    @InjectMocks
+    @Mock
+    private InventoryService inventoryService;
+
     private CartServiceImpl cartService;
 
     private Cart testCart;
@@ -45,6 +56,9 @@ class CartServiceTest {
 
     @BeforeEach
     void setUp() {
+        cartService = new CartServiceImpl(cartRepository, productService, inventoryService,
+                new MutationLanes<>("cart", new SimpleMeterRegistry()));
+
         testProduct = Product.builder()
                 .id(TEST_PRODUCT_ID)
                 .imageUrl("https://example.com/test-product.jpg")
@@ -112,21 +126,12 @@ class CartServiceTest {
 
     @Test
     void shouldAddItemToCart() {
-        Cart cartWithItem = Cart.builder()
-                .id(TEST_CART_ID)
-                .userId(TEST_USER_ID)
-                .items(new ArrayList<>())
-                .total(Money.ZERO)
-                .updatedAt(LocalDateTime.now())
-                .build();
-        cartWithItem.addItem(testItem);
-
-        when(cartRepository.findByUserId(TEST_USER_ID))
-                .thenReturn(Mono.just(testCart));
         when(productService.findById(TEST_PRODUCT_ID))
                 .thenReturn(Mono.just(testProduct));
-        when(cartRepository.save(any(Cart.class)))
-                .thenReturn(Mono.just(cartWithItem));
+        when(inventoryService.hold(TEST_USER_ID, TEST_PRODUCT_ID, 1))
+                .thenReturn(Mono.empty());
+        when(cartRepository.addItem(eq(TEST_USER_ID), any(CartItem.class), any()))
+                .thenAnswer(this::addItem);
 
         StepVerifier.create(cartService.addToCart(TEST_USER_ID, testItem))
                 .expectNextMatches(cart -> 
@@ -134,6 +139,21 @@ class CartServiceTest {
                     cart.getItems().get(0).getProductId().equals(TEST_PRODUCT_ID) &&
                     cart.getItems().get(0).getUnit().equals("pcs"))
                 .verifyComplete();
+        verify(cartRepository, never()).findByUserId(TEST_USER_ID);
+    }
+
+    @Test
+    void shouldNotAddItemWhenStockCannotBeHeld() {
+        when(productService.findById(TEST_PRODUCT_ID))
+                .thenReturn(Mono.just(testProduct));
+        when(inventoryService.hold(TEST_USER_ID, TEST_PRODUCT_ID, 1))
+                .thenReturn(Mono.error(new InsufficientStockException(Set.of(TEST_PRODUCT_ID))));
+        when(cartRepository.addItem(eq(TEST_USER_ID), any(CartItem.class), any()))
+                .thenAnswer(this::addItem);
+
+        StepVerifier.create(cartService.addToCart(TEST_USER_ID, testItem))
+                .expectError(InsufficientStockException.class)
+                .verify();
     }
 
     @Test
@@ -152,6 +172,9 @@ class CartServiceTest {
         when(cartRepository.save(any(Cart.class)))
                 .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
 
+        when(inventoryService.release(TEST_USER_ID, TEST_PRODUCT_ID))
+                .thenReturn(Mono.empty());
+
         StepVerifier.create(cartService.removeItem(TEST_USER_ID, testItem.getId()))
                 .expectNextMatches(cart -> cart.getItems().isEmpty())
                 .verifyComplete();
@@ -173,10 +196,23 @@ class CartServiceTest {
         when(cartRepository.save(any(Cart.class)))
                 .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
 
+        when(inventoryService.releaseAll(TEST_USER_ID))
+                .thenReturn(Mono.empty());
+
         StepVerifier.create(cartService.clearCart(TEST_USER_ID))
                 .expectNextMatches(cart -> 
                     cart.getItems().isEmpty() &&
                     cart.getTotal().equals(Money.ZERO))
                 .verifyComplete();
     }
+
+    // Stands in for the repository: merges the line into testCart, then runs the callback
+    // before "committing".
+    @SuppressWarnings("unchecked")
+    private Mono<Cart> addItem(InvocationOnMock invocation) {
+        CartItem item = invocation.getArgument(1);
+        Function<CartItem, Mono<Void>> beforeCommit = invocation.getArgument(2);
+        testCart.addItem(item);
+        return beforeCommit.apply(testCart.getItems().get(0)).thenReturn(testCart);
+    }
 }
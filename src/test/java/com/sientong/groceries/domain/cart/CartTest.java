@@ -5,6 +5,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -114,4 +116,53 @@ class CartTest {
         
         assertTrue(cart.getUpdatedAt().isAfter(beforeUpdate));
     }
+
+    @Test
+    void shouldTrackOnlyLinesChangedSincePersisted() {
+        cart.addItem(item1);
+        cart.addItem(item2);
+        cart.markPersisted();
+
+        cart.updateItem("item2", CartItem.builder().quantity(5).build());
+
+        assertEquals(List.of(item2), cart.getChangedItems());
+        assertTrue(cart.getRemovedItemIds().isEmpty());
+    }
+
+    @Test
+    void shouldTrackRemovedLines() {
+        cart.addItem(item1);
+        cart.addItem(item2);
+        cart.markPersisted();
+
+        cart.removeItem("item1");
+        cart.clear();
+
+        assertTrue(cart.getChangedItems().isEmpty());
+        assertEquals(Set.of("item1", "item2"), cart.getRemovedItemIds());
+    }
+
+    @Test
+    void shouldCopyItemsAndPendingChanges() {
+        cart.addItem(item1);
+
+        Cart copy = cart.copy();
+        copy.updateItem("item1", CartItem.builder().quantity(5).build());
+
+        assertEquals(2, cart.getItems().get(0).getQuantity());
+        assertEquals(5, copy.getItems().get(0).getQuantity());
+        assertEquals(List.of("item1"), copy.getChangedItems().stream().map(CartItem::getId).toList());
+    }
+
+    @Test
+    void shouldTrackReplacedItemsAsChangesAndRemovals() {
+        cart.addItem(item1);
+        cart.markPersisted();
+
+        cart.replaceItems(List.of(item2));
+
+        assertEquals(List.of(item2), cart.getChangedItems());
+        assertEquals(Set.of("item1"), cart.getRemovedItemIds());
+        assertEquals(new BigDecimal("6.00"), cart.getTotal().getAmount());
+    }
 }
@@ -0,0 +1,112 @@
+package com.sientong.groceries.domain.checkout;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.sientong.groceries.domain.cart.CartRepository;
+import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.notification.NotificationService;
+import com.sientong.groceries.domain.order.Order;
+import com.sientong.groceries.domain.order.OrderItem;
+import com.sientong.groceries.domain.order.OrderStatus;
+import com.sientong.groceries.domain.payment.PaymentService;
+import com.sientong.groceries.domain.product.InsufficientStockException;
+import com.sientong.groceries.domain.product.ProductRepository;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class CheckoutServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @InjectMocks
+    private CheckoutService checkoutService;
+
+    private Order order;
+
+    @BeforeEach
+    void setUp() {
+        order = Order.builder()
+                .id("order1")
+                .userId("user1")
+                .items(List.of(
+                        OrderItem.of("prod1", "Apple", Money.of(new BigDecimal("1.50")), Quantity.of(2, "kg")),
+                        OrderItem.of("prod2", "Orange", Money.of(new BigDecimal("2.00")), Quantity.of(3, "kg")),
+                        OrderItem.of("prod1", "Apple", Money.of(new BigDecimal("1.50")), Quantity.of(1, "kg"))))
+                .build();
+        when(cartRepository.flush("user1")).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void processCheckout_ShouldDecrementAllLinesInOneCallAndConfirm() {
+        // Given
+        Map<String, Integer> quantities = Map.of("prod1", 3, "prod2", 3);
+        when(productRepository.decrementStock("user1", quantities)).thenReturn(Mono.empty());
+        when(paymentService.processPayment(order)).thenReturn(Mono.just(true));
+        when(notificationService.createNotification(eq("user1"), anyString(), anyString(), any(), eq("order1")))
+                .thenReturn(Mono.empty());
+
+        // When & Then
+        StepVerifier.create(checkoutService.processCheckout(order))
+                .expectNextMatches(confirmed -> confirmed.getStatus() == OrderStatus.CONFIRMED)
+                .verifyComplete();
+        verify(productRepository, never()).incrementStock(any());
+    }
+
+    @Test
+    void processCheckout_ShouldNotChargeWhenStockIsShort() {
+        // Given
+        when(productRepository.decrementStock(eq("user1"), any()))
+                .thenReturn(Mono.error(new InsufficientStockException(Set.of("prod2"))));
+
+        // When & Then
+        StepVerifier.create(checkoutService.processCheckout(order))
+                .expectError(InsufficientStockException.class)
+                .verify();
+        verify(paymentService, never()).processPayment(any());
+    }
+
+    @Test
+    void processCheckout_ShouldReleaseStockWhenPaymentFails() {
+        // Given
+        Map<String, Integer> quantities = Map.of("prod1", 3, "prod2", 3);
+        when(productRepository.decrementStock("user1", quantities)).thenReturn(Mono.empty());
+        when(paymentService.processPayment(order)).thenReturn(Mono.just(false));
+        when(productRepository.incrementStock(quantities)).thenReturn(Mono.empty());
+
+        // When & Then
+        StepVerifier.create(checkoutService.processCheckout(order))
+                .expectError(CheckoutService.PaymentException.class)
+                .verify();
+        verify(productRepository).incrementStock(quantities);
+    }
+}
@@ -0,0 +1,63 @@
+package com.sientong.groceries.domain.inventory;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.sientong.groceries.domain.product.InsufficientStockException;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryServiceTest {
+    private static final Duration TTL = Duration.ofMinutes(15);
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        inventoryService = new InventoryService(reservationRepository, TTL);
+    }
+
+    @Test
+    void hold_ShouldFailWhenStockIsHeldByOthers() {
+        when(reservationRepository.hold("user1", "prod1", 3, TTL)).thenReturn(Mono.just(false));
+
+        StepVerifier.create(inventoryService.hold("user1", "prod1", 3))
+                .expectError(InsufficientStockException.class)
+                .verify();
+    }
+
+    @Test
+    void hold_ShouldReleaseWhenQuantityDropsToZero() {
+        when(reservationRepository.release("user1", "prod1")).thenReturn(Mono.empty());
+
+        StepVerifier.create(inventoryService.hold("user1", "prod1", 0))
+                .verifyComplete();
+        verify(reservationRepository, never()).hold(any(), any(), any(Integer.class), any());
+    }
+
+    @Test
+    void releaseExpiredHolds_ShouldSweepInBatchesUntilDrained() {
+        when(reservationRepository.releaseExpired(InventoryService.SWEEP_BATCH_SIZE))
+                .thenReturn(Mono.just((long) InventoryService.SWEEP_BATCH_SIZE), Mono.just(12L));
+
+        StepVerifier.create(inventoryService.releaseExpiredHolds())
+                .verifyComplete();
+        verify(reservationRepository, times(2)).releaseExpired(InventoryService.SWEEP_BATCH_SIZE);
+    }
+}
@@ -0,0 +1,74 @@
+package com.sientong.groceries.domain.inventory;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.sientong.groceries.domain.notification.NotificationService;
+import com.sientong.groceries.domain.notification.NotificationType;
+import com.sientong.groceries.domain.user.User;
+import com.sientong.groceries.domain.user.UserRepository;
+import com.sientong.groceries.domain.user.UserRole;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class StockAlertServiceTest {
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private StockAlertService stockAlertService;
+
+    @Test
+    void shouldStreamOnlyThresholdCrossings() {
+        StepVerifier.create(stockAlertService.stream().take(2))
+                .then(() -> {
+                    when(userRepository.findByRole(UserRole.SELLER)).thenReturn(Flux.empty());
+                    stockAlertService.stockChanged(List.of(
+                            new StockLevel("p1", 20, 10, 5),
+                            new StockLevel("p2", 6, 5, 5),
+                            new StockLevel("p3", 3, 2, 5),
+                            new StockLevel("p4", 0, 50, 5)));
+                })
+                .expectNextMatches(alert -> alert.getProductId().equals("p2") && alert.getType() == StockAlert.Type.LOW)
+                .expectNextMatches(alert -> alert.getProductId().equals("p4") && alert.getType() == StockAlert.Type.RESTOCKED)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldNotifyEverySellerWhenStockRunsLow() {
+        User seller = User.builder().id("seller1").role(UserRole.SELLER).build();
+        when(userRepository.findByRole(UserRole.SELLER)).thenReturn(Flux.just(seller));
+        when(notificationService.createNotification(eq("seller1"), anyString(), anyString(),
+                eq(NotificationType.STOCK_ALERT), eq("p1"))).thenReturn(Mono.empty());
+
+        stockAlertService.stockChanged(List.of(new StockLevel("p1", 6, 5, 5)));
+
+        verify(notificationService).createNotification(eq("seller1"), anyString(), anyString(),
+                eq(NotificationType.STOCK_ALERT), eq("p1"));
+    }
+
+    @Test
+    void shouldNotNotifyWhenRestocked() {
+        stockAlertService.stockChanged(List.of(new StockLevel("p1", 5, 6, 5)));
+
+        verify(userRepository, never()).findByRole(any());
+    }
+}
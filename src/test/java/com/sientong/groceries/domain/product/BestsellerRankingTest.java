@@ -0,0 +1,103 @@
+package com.sientong.groceries.domain.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BestsellerRankingTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 13);
+
+    private BestsellerRanking ranking;
+
+    @BeforeEach
+    void setUp() {
+        ranking = new BestsellerRanking(Duration.ZERO);
+    }
+
+    @Test
+    void shouldRankByUnitsSoldWithinWindow() {
+        ranking.record("apples", "fruits", 5, TODAY);
+        ranking.record("milk", "dairy", 3, TODAY.minusDays(1));
+        ranking.record("milk", "dairy", 4, TODAY);
+        ranking.record("bread", "bakery", 20, TODAY.minusDays(7));
+
+        assertEquals(List.of("milk", "apples"), ranking.top(null, 7, 10, TODAY));
+        assertEquals(List.of("bread", "milk", "apples"), ranking.top(null, 8, 10, TODAY));
+        assertEquals(List.of("milk"), ranking.top(null, 7, 1, TODAY));
+    }
+
+    @Test
+    void shouldFilterByCategory() {
+        ranking.record("apples", "fruits", 5, TODAY);
+        ranking.record("pears", "fruits", 2, TODAY);
+        ranking.record("milk", "dairy", 9, TODAY);
+
+        assertEquals(List.of("apples", "pears"), ranking.top("fruits", 7, 10, TODAY));
+    }
+
+    @Test
+    void shouldReflectNewSalesAndDropExpiredDays() {
+        ranking.record("apples", "fruits", 5, TODAY);
+        ranking.record("milk", "dairy", 3, TODAY);
+        assertEquals(List.of("apples", "milk"), ranking.top(null, 1, 10, TODAY));
+
+        ranking.record("milk", "dairy", 3, TODAY);
+        assertEquals(List.of("milk", "apples"), ranking.top(null, 1, 10, TODAY));
+
+        LocalDate later = TODAY.plusDays(BestsellerRanking.MAX_WINDOW_DAYS);
+        ranking.record("bread", "bakery", 1, later);
+        assertEquals(List.of("bread"), ranking.top(null, BestsellerRanking.MAX_WINDOW_DAYS, 10, later));
+    }
+
+    @Test
+    void shouldReuseRankingWithinRefreshIntervalDespiteNewSales() {
+        ranking = new BestsellerRanking(Duration.ofHours(1));
+        ranking.record("apples", "fruits", 5, TODAY);
+        ranking.record("milk", "dairy", 3, TODAY);
+        assertEquals(List.of("apples", "milk"), ranking.top(null, 1, 10, TODAY));
+
+        ranking.record("milk", "dairy", 3, TODAY);
+
+        assertEquals(List.of("apples", "milk"), ranking.top(null, 1, 10, TODAY));
+        assertEquals(List.of(), ranking.top(null, 1, 10, TODAY.plusDays(1)));
+    }
+
+    @Test
+    void shouldRecomputeOnceRefreshIntervalHasPassed() throws InterruptedException {
+        ranking = new BestsellerRanking(Duration.ofMillis(50));
+        ranking.record("apples", "fruits", 5, TODAY);
+        ranking.record("milk", "dairy", 3, TODAY);
+        assertEquals(List.of("apples", "milk"), ranking.top(null, 1, 10, TODAY));
+
+        ranking.record("milk", "dairy", 3, TODAY);
+        Thread.sleep(60);
+
+        assertEquals(List.of("milk", "apples"), ranking.top(null, 1, 10, TODAY));
+    }
+
+    @Test
+    void shouldTakeBackSalesOfCancelledOrders() {
+        ranking.record("apples", "fruits", 5, TODAY.minusDays(1));
+        ranking.record("milk", "dairy", 3, TODAY);
+        assertEquals(List.of("apples", "milk"), ranking.top(null, 7, 10, TODAY));
+
+        ranking.subtract("apples", 4, TODAY.minusDays(1));
+        assertEquals(List.of("milk", "apples"), ranking.top(null, 7, 10, TODAY));
+
+        ranking.subtract("milk", 3, TODAY);
+        ranking.subtract("apples", 1, TODAY);
+        assertEquals(List.of("apples"), ranking.top(null, 7, 10, TODAY));
+    }
+
+    @Test
+    void shouldRejectWindowLongerThanKept() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ranking.top(null, BestsellerRanking.MAX_WINDOW_DAYS + 1, 10, TODAY));
+    }
+}
@@ -0,0 +1,54 @@
+package com.sientong.groceries.domain.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CoPurchaseIndexTest {
+    private CoPurchaseIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new CoPurchaseIndex();
+    }
+
+    @Test
+    void shouldRankProductsByTimesBoughtTogether() {
+        index.record(List.of("milk", "bread", "eggs"));
+        index.record(List.of("milk", "eggs"));
+        index.record(List.of("milk", "eggs", "eggs", "butter"));
+        index.record(List.of("bread", "butter"));
+
+        assertEquals(List.of("eggs", "bread", "butter"), index.neighbours("milk", 10));
+        assertEquals(List.of("eggs"), index.neighbours("milk", 1));
+        assertEquals(List.of("milk", "bread", "butter"), index.neighbours("eggs", 10));
+    }
+
+    @Test
+    void shouldReturnNothingForUnknownOrUnpairedProducts() {
+        index.record(List.of("milk"));
+
+        assertTrue(index.neighbours("milk", 5).isEmpty());
+        assertTrue(index.neighbours("unknown", 5).isEmpty());
+    }
+
+    @Test
+    void shouldKeepOnlyTopNeighboursWhenManyProductsAreSeen() {
+        List<String> catalog = IntStream.range(0, 2000).mapToObj(i -> "p" + i).toList();
+        catalog.forEach(product -> index.record(List.of("milk", product)));
+        index.record(List.of("milk", "p1999"));
+        index.record(List.of("milk", "p1500"));
+        index.record(List.of("milk", "p1500"));
+
+        List<String> neighbours = index.neighbours("milk", 100);
+
+        assertEquals(CoPurchaseIndex.MAX_NEIGHBOURS, neighbours.size());
+        assertEquals(List.of("p1500", "p1999"), neighbours.subList(0, 2));
+        assertEquals(List.of("milk"), index.neighbours("p1234", 5));
+    }
+}
@@ -1,10 +1,17 @@
 package com.sientong.groceries.domain.product;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,23 +20,24 @@ import org.mockito.MockitoAnnotations;
 
 import com.sientong.groceries.domain.common.Money;
 import com.sientong.groceries.domain.common.Quantity;
-import com.sientong.groceries.infrastructure.persistence.entity.ProductEntity;
-import com.sientong.groceries.infrastructure.persistence.repository.ReactiveProductRepository;
-
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 class ProductServiceTest {
     @Mock
-    private ReactiveProductRepository productRepository;
+    private ProductRepository productRepository;
+
+    private ProductServiceImpl productService;
 
-    private ProductService productService;
+    private BestsellerRanking bestsellerRanking;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        productService = new ProductServiceImpl(productRepository);
+        bestsellerRanking = new BestsellerRanking(Duration.ZERO);
+        productService = new ProductServiceImpl(productRepository, new ProductSuggestionIndex(bestsellerRanking), bestsellerRanking,
+                new CoPurchaseIndex());
     }
 
     @Test
@@ -37,22 +45,10 @@ class ProductServiceTest {
         // Given
         String productId = "1";
         Category category = Category.of("cat1", "Fruits");
-        ProductEntity entity = ProductEntity.builder()
-                .id(productId)
-                .name("Apple")
-                .description("Fresh apple")
-                .categoryId(category.getId())
-                .categoryName(category.getName())
-                .price(BigDecimal.valueOf(1.99))
-                .currency("USD")
-                .quantity(100)
-                .unit("piece")
-                .imageUrl("http://example.com/apple.jpg")
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
-                .build();
+        Product stored = new Product(productId, "Apple", "Fresh apple", Money.of(BigDecimal.valueOf(1.99), "USD"),
+                category, Quantity.of(100, "piece"), "http://example.com/apple.jpg", LocalDateTime.now(), LocalDateTime.now());
 
-        when(productRepository.findById(productId)).thenReturn(Mono.just(entity));
+        when(productRepository.findById(productId)).thenReturn(Mono.just(stored));
 
         // When
         Mono<Product> result = productService.findById(productId);
@@ -73,22 +69,10 @@ class ProductServiceTest {
     void findAll_ShouldReturnAllProducts() {
         // Given
         Category category = Category.of("cat1", "Fruits");
-        ProductEntity entity = ProductEntity.builder()
-                .id("1")
-                .name("Apple")
-                .description("Fresh apple")
-                .categoryId(category.getId())
-                .categoryName(category.getName())
-                .price(BigDecimal.valueOf(1.99))
-                .currency("USD")
-                .quantity(100)
-                .unit("piece")
-                .imageUrl("http://example.com/apple.jpg")
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
-                .build();
+        Product stored = new Product("1", "Apple", "Fresh apple", Money.of(BigDecimal.valueOf(1.99), "USD"),
+                category, Quantity.of(100, "piece"), "http://example.com/apple.jpg", LocalDateTime.now(), LocalDateTime.now());
 
-        when(productRepository.findAll()).thenReturn(Flux.just(entity));
+        when(productRepository.findAll()).thenReturn(Flux.just(stored));
 
         // When
         Flux<Product> result = productService.findAll();
@@ -120,22 +104,10 @@ class ProductServiceTest {
             null
         );
 
-        ProductEntity savedEntity = ProductEntity.builder()
-                .id("1")
-                .name("Apple")
-                .description("Fresh apple")
-                .categoryId(category.getId())
-                .categoryName(category.getName())
-                .price(BigDecimal.valueOf(1.99))
-                .currency("USD")
-                .quantity(100)
-                .unit("piece")
-                .imageUrl("http://example.com/apple.jpg")
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
-                .build();
+        Product created = new Product("1", "Apple", "Fresh apple", Money.of(BigDecimal.valueOf(1.99), "USD"),
+                category, Quantity.of(100, "piece"), "http://example.com/apple.jpg", LocalDateTime.now(), LocalDateTime.now());
 
-        when(productRepository.save(any(ProductEntity.class))).thenReturn(Mono.just(savedEntity));
+        when(productRepository.save(any(Product.class))).thenReturn(Mono.just(created));
 
         // When
         Mono<Product> result = productService.createProduct(product);
@@ -149,5 +121,245 @@ class ProductServiceTest {
                     savedProduct.getImageUrl().equals("http://example.com/apple.jpg")
                 )
                 .verifyComplete();
+        verify(productRepository).save(argThat(saved -> saved.getId() != null));
+    }
+
+    @Test
+    void updateProduct_ShouldSaveKeepingCreationTime() {
+        // Given
+        Product existing = testProduct("1", "Apple");
+        Product changed = testProduct("other", "Green Apple");
+        when(productRepository.findById("1")).thenReturn(Mono.just(existing));
+        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        // When
+        Mono<Product> result = productService.updateProduct("1", changed);
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(product -> product.getId().equals("1") && product.getName().equals("Green Apple"))
+                .verifyComplete();
+        verify(productRepository).save(argThat(saved ->
+                saved.getId().equals("1") && saved.getCreatedAt().equals(existing.getCreatedAt())));
+    }
+
+    @Test
+    void findPage_ShouldReturnCursorWhenMoreRowsFollow() {
+        // Given
+        ProductSummary apple = testSummary("1", "Apple");
+        ProductSummary banana = testSummary("2", "Banana");
+
+        when(productRepository.findPage(null, 2, 0)).thenReturn(Flux.just(apple, banana));
+        when(productRepository.countListed(null)).thenReturn(Mono.just(3L));
+
+        // When
+        Mono<ProductPage> result = productService.findPage(null, 0, 1);
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(page ->
+                    page.getContent().size() == 1 &&
+                    page.getTotalElements() == 3 &&
+                    ProductCursor.decode(page.getNextCursor()).equals(new ProductCursor("Apple", "1"))
+                )
+                .verifyComplete();
+    }
+
+    @Test
+    void findPageAfter_ShouldSeekPastCursor() {
+        // Given
+        ProductSummary banana = testSummary("2", "Banana");
+        String cursor = new ProductCursor("Apple", "1").encode();
+
+        when(productRepository.findPageAfter("cat1", new ProductCursor("Apple", "1"), 2)).thenReturn(Flux.just(banana));
+        when(productRepository.countListed("cat1")).thenReturn(Mono.just(2L));
+
+        // When
+        Mono<ProductPage> result = productService.findPageAfter("cat1", cursor, 1);
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(page ->
+                    page.getContent().get(0).getName().equals("Banana") &&
+                    page.isLast()
+                )
+                .verifyComplete();
+    }
+
+    @Test
+    void search_ShouldReturnRankedHitsWithoutCursor() {
+        // Given
+        ProductSummary apple = testSummary("1", "Apple");
+        ProductSummary applePie = testSummary("2", "Apple Pie");
+
+        when(productRepository.search("apple", null, 2, 0)).thenReturn(Flux.just(apple, applePie));
+        when(productRepository.countSearch("apple", null)).thenReturn(Mono.just(5L));
+
+        // When
+        Mono<ProductPage> result = productService.search("apple", null, 0, 1);
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(page ->
+                    page.getContent().size() == 1 &&
+                    page.getTotalElements() == 5 &&
+                    !page.isLast() &&
+                    page.getNextCursor() == null
+                )
+                .verifyComplete();
+    }
+
+    @Test
+    void search_ShouldFallBackToSimilarNamesWhenNothingMatches() {
+        // Given
+        Product banana = testProduct("2", "Organic Bananas");
+
+        when(productRepository.search("bananna", null, 11, 0)).thenReturn(Flux.empty());
+        when(productRepository.countSearch("bananna", null)).thenReturn(Mono.just(0L));
+        when(productRepository.searchSimilar("bananna", ProductServiceImpl.DEFAULT_SIMILARITY_THRESHOLD, 10))
+                .thenReturn(Flux.just(banana));
+
+        // When
+        Mono<ProductPage> result = productService.search("bananna", null, 0, 10);
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(page ->
+                    page.getContent().size() == 1 &&
+                    page.getContent().get(0).getName().equals("Organic Bananas") &&
+                    page.isLast()
+                )
+                .verifyComplete();
+    }
+
+    @Test
+    void searchSimilar_ShouldNotGoBelowIndexThreshold() {
+        // Given
+        Product cheese = testProduct("3", "Cheddar Cheese");
+
+        when(productRepository.searchSimilar("chese", ProductServiceImpl.MIN_SIMILARITY_THRESHOLD, 5))
+                .thenReturn(Flux.just(cheese));
+
+        // When
+        Flux<Product> result = productService.search("chese", 0.1, 5);
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(product -> product.getName().equals("Cheddar Cheese"))
+                .verifyComplete();
+    }
+
+    @Test
+    void createProduct_ShouldMakeProductSuggestible() {
+        // Given
+        Product saved = testProduct("1", "Organic Bananas");
+        when(productRepository.save(any(Product.class))).thenReturn(Mono.just(saved));
+
+        // When
+        Flux<ProductSuggestion> result = productService.createProduct(saved)
+                .thenMany(productService.suggest("bana", 5));
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(suggestion -> suggestion.getText().equals("Organic Bananas"))
+                .verifyComplete();
+    }
+
+    @Test
+    void refreshSuggestionIndex_ShouldPickUpProductsWrittenElsewhere() {
+        // Given
+        when(productRepository.findAll()).thenReturn(Flux.just(testProduct("1", "Organic Bananas")));
+
+        // When
+        Flux<ProductSuggestion> result = productService.refreshSuggestionIndex()
+                .thenMany(productService.suggest("bana", 5));
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(suggestion -> suggestion.getText().equals("Organic Bananas"))
+                .verifyComplete();
+    }
+
+    @Test
+    void importProducts_ShouldUpsertEachBatchOnceAndReportInvalidLines() {
+        // Given
+        Product apple = testProduct("1", "Apple");
+        Product renamedApple = testProduct("1", "Green Apple");
+        Product banana = testProduct("2", "Banana");
+        when(productRepository.upsertAll(any())).thenReturn(Mono.just(2L));
+
+        // When
+        Flux<ProductImportReport> result = productService.importProducts(Flux.just(
+                ProductImportLine.valid(1, apple),
+                ProductImportLine.invalid(2, "Price is required"),
+                ProductImportLine.valid(3, banana),
+                ProductImportLine.valid(4, renamedApple)));
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(report ->
+                    report.getBatch() == 1 &&
+                    report.getImported() == 2 &&
+                    report.getFailed() == 1 &&
+                    report.getErrors().get(0).getLine() == 2
+                )
+                .verifyComplete();
+        verify(productRepository, times(1)).upsertAll(any());
+        StepVerifier.create(productService.suggest("green", 5))
+                .expectNextMatches(suggestion -> suggestion.getText().equals("Green Apple"))
+                .verifyComplete();
+    }
+
+    @Test
+    void importProducts_ShouldReportFailedBatchAndContinue() {
+        // Given
+        Product apple = testProduct("1", "Apple");
+        when(productRepository.upsertAll(any()))
+                .thenReturn(Mono.error(new IllegalStateException("duplicate key")));
+
+        // When
+        Flux<ProductImportReport> result = productService.importProducts(Flux.just(ProductImportLine.valid(1, apple)));
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(report ->
+                    report.getImported() == 0 &&
+                    report.getFailed() == 1 &&
+                    report.getErrors().get(0).getMessage().contains("duplicate key")
+                )
+                .verifyComplete();
+    }
+
+    @Test
+    void findBestsellers_ShouldReturnProductsInRankingOrder() {
+        // Given
+        bestsellerRanking.record("1", "cat1", 2, LocalDate.now());
+        bestsellerRanking.record("2", "cat1", 7, LocalDate.now());
+        when(productRepository.findAllByIds(any())).thenReturn(Mono.just(Map.of(
+                "1", testProduct("1", "Apple"),
+                "2", testProduct("2", "Banana"))));
+
+        // When
+        Flux<Product> result = productService.findBestsellers(null, 7, 10);
+
+        // Then
+        StepVerifier.create(result.map(Product::getName))
+                .expectNext("Banana", "Apple")
+                .verifyComplete();
+    }
+
+    private ProductSummary testSummary(String id, String name) {
+        return ProductSummary.builder()
+                .id(id)
+                .name(name)
+                .price(Money.of(BigDecimal.valueOf(1.99), "USD"))
+                .unit("piece")
+                .inStock(true)
+                .build();
+    }
+
+    private Product testProduct(String id, String name) {
+        return new Product(id, name, "Fresh " + name.toLowerCase(), Money.of(BigDecimal.valueOf(1.99), "USD"),
+                Category.of("cat1", "Fruits"), Quantity.of(100, "piece"), null, LocalDateTime.now(), LocalDateTime.now());
     }
 }
@@ -0,0 +1,156 @@
+package com.sientong.groceries.domain.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.domain.common.Quantity;
+
+class ProductSuggestionIndexTest {
+    private BestsellerRanking bestsellerRanking;
+    private ProductSuggestionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        bestsellerRanking = new BestsellerRanking(Duration.ZERO);
+        index = new ProductSuggestionIndex(bestsellerRanking);
+    }
+
+    private Product product(String id, String name, String categoryId, String categoryName) {
+        return Product.builder()
+                .id(id)
+                .name(name)
+                .description("")
+                .price(Money.of(BigDecimal.ONE))
+                .category(Category.of(categoryId, categoryName))
+                .quantity(Quantity.of(10))
+                .build();
+    }
+
+    @Test
+    void shouldSuggestByAnyWordPrefix() {
+        index.index(product("p1", "Organic Bananas", "cat-1", "Fruits"));
+        index.index(product("p2", "Banana Bread", "cat-3", "Bakery"));
+
+        List<ProductSuggestion> suggestions = index.suggest("Ban", 10);
+
+        assertEquals(2, suggestions.size());
+        assertTrue(suggestions.stream().allMatch(s -> s.getType() == ProductSuggestion.Type.PRODUCT));
+    }
+
+    @Test
+    void shouldSuggestCategories() {
+        index.index(product("p1", "Whole Milk", "cat-2", "Dairy"));
+
+        List<ProductSuggestion> suggestions = index.suggest("dai", 10);
+
+        assertEquals(List.of(new ProductSuggestion(ProductSuggestion.Type.CATEGORY, "cat-2", "Dairy")), suggestions);
+    }
+
+    @Test
+    void shouldReplaceKeysWhenProductIsRenamed() {
+        index.index(product("p1", "Whole Milk", "cat-2", "Dairy"));
+        index.index(product("p1", "Skim Milk", "cat-2", "Dairy"));
+
+        assertTrue(index.suggest("whole", 10).isEmpty());
+        assertEquals("Skim Milk", index.suggest("skim", 10).get(0).getText());
+        assertEquals(1, index.suggest("milk", 10).size());
+    }
+
+    @Test
+    void shouldDropCategoryWithItsLastProduct() {
+        index.index(product("p1", "Whole Milk", "cat-2", "Dairy"));
+        index.index(product("p2", "Greek Yogurt", "cat-2", "Dairy"));
+
+        index.remove("p1");
+        assertEquals(1, index.suggest("dairy", 10).size());
+
+        index.remove("p2");
+        assertTrue(index.suggest("dairy", 10).isEmpty());
+        assertTrue(index.suggest("greek", 10).isEmpty());
+    }
+
+    @Test
+    void shouldRespectLimit() {
+        index.index(product("p1", "Apple Juice", "cat-1", "Fruits"));
+        index.index(product("p2", "Apple Pie", "cat-3", "Bakery"));
+        index.index(product("p3", "Apple Sauce", "cat-1", "Fruits"));
+
+        assertEquals(2, index.suggest("apple", 2).size());
+    }
+
+    @Test
+    void shouldRankBestsellersFirstBeforeApplyingLimit() {
+        index.index(product("p1", "Apple Juice", "cat-1", "Fruits"));
+        index.index(product("p2", "Apple Pie", "cat-3", "Bakery"));
+        index.index(product("p3", "Apple Sauce", "cat-1", "Fruits"));
+        bestsellerRanking.record("p3", "cat-1", 5, LocalDate.now());
+        bestsellerRanking.record("p2", "cat-3", 2, LocalDate.now());
+
+        assertEquals(List.of("Apple Sauce", "Apple Pie"), texts(index.suggest("apple", 2)));
+        assertEquals(List.of("Apple Sauce", "Apple Pie", "Apple Juice"), texts(index.suggest("apple", 10)));
+    }
+
+    @Test
+    void shouldSuggestMatchingCategoriesBeforeProducts() {
+        index.index(product("p1", "Bakery Rolls", "cat-3", "Bakery"));
+        bestsellerRanking.record("p1", "cat-3", 5, LocalDate.now());
+
+        assertEquals(List.of("Bakery", "Bakery Rolls"), texts(index.suggest("bak", 10)));
+    }
+
+    @Test
+    void shouldNarrowByLaterWordsOfName() {
+        index.index(product("p1", "Organic Bananas", "cat-1", "Fruits"));
+        index.index(product("p2", "Organic Apples", "cat-1", "Fruits"));
+
+        assertEquals(List.of("Organic Bananas"), texts(index.suggest("organic ban", 10)));
+    }
+
+    @Test
+    void rebuild_ShouldSwapInLoadedProductsKeepingLocalWrites() {
+        index.index(product("p1", "Whole Milk", "cat-2", "Dairy"));
+        index.index(product("p2", "Greek Yogurt", "cat-2", "Dairy"));
+
+        ProductSuggestionIndex.Rebuild rebuild = index.rebuild();
+        // Indexed locally while the load runs, and loaded as it was before the write.
+        index.index(product("p3", "Butter", "cat-2", "Dairy"));
+        rebuild.add(product("p3", "Margarine", "cat-2", "Dairy"));
+        // Greek Yogurt was deleted through another instance, and Cheddar added through one.
+        rebuild.add(product("p1", "Whole Milk", "cat-2", "Dairy"));
+        rebuild.add(product("p4", "Cheddar", "cat-2", "Dairy"));
+
+        assertTrue(rebuild.install());
+        assertEquals(List.of("Butter"), texts(index.suggest("butter", 10)));
+        assertTrue(index.suggest("margarine", 10).isEmpty());
+        assertTrue(index.suggest("greek", 10).isEmpty());
+        assertEquals(List.of("Cheddar"), texts(index.suggest("ched", 10)));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void rebuild_ShouldNotInstallOnceSuperseded() {
+        index.index(product("p1", "Whole Milk", "cat-2", "Dairy"));
+        ProductSuggestionIndex.Rebuild first = index.rebuild();
+        ProductSuggestionIndex.Rebuild second = index.rebuild();
+        first.add(product("p2", "Greek Yogurt", "cat-2", "Dairy"));
+
+        assertFalse(first.install());
+        assertTrue(index.suggest("greek", 10).isEmpty());
+        assertTrue(second.install());
+        assertTrue(index.suggest("milk", 10).isEmpty());
+    }
+
+    private static List<String> texts(List<ProductSuggestion> suggestions) {
+        return suggestions.stream().map(ProductSuggestion::getText).toList();
+    }
+}
@@ -153,6 +153,20 @@ class ProductTest {
         assertEquals("kg", product.getQuantity().getUnit());
     }
 
+    @Test
+    void shouldRemoveAllStock() {
+        Product product = Product.builder()
+                .id("1")
+                .name("Organic Apples")
+                .price(Money.of(BigDecimal.valueOf(5.99)))
+                .category(testCategory)
+                .quantity(Quantity.of(100, "kg"))
+                .build();
+
+        product.removeStock(Quantity.of(100, "kg"));
+        assertEquals(0, product.getQuantity().getValue());
+    }
+
     @Test
     void shouldThrowExceptionWhenRemovingTooMuchStock() {
         Product product = Product.builder()
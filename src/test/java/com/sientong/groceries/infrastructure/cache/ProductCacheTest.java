@@ -0,0 +1,115 @@
+package com.sientong.groceries.infrastructure.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.product.Category;
+import com.sientong.groceries.domain.product.Product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class ProductCacheTest {
+    private ProductCache productCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        productCache = new ProductCache(100, Duration.ofMinutes(10), Duration.ofMinutes(10), new SimpleMeterRegistry());
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void findById_ShouldNotCacheLoadThatRacedWithInvalidation() {
+        Sinks.One<Product> stale = Sinks.one();
+        Mono<Product> first = productCache.findById("1", () -> load(stale.asMono()), Mono::empty);
+
+        // The load reads the row, a write invalidates the product, then the load completes.
+        StepVerifier.create(first)
+                .then(() -> productCache.invalidate("1"))
+                .then(() -> stale.tryEmitValue(product("1", "Apple", 10)))
+                .expectNextMatches(product -> product.getName().equals("Apple"))
+                .verifyComplete();
+
+        StepVerifier.create(productCache.findById("1", () -> load(Mono.just(product("1", "Green Apple", 5))), Mono::empty))
+                .expectNextMatches(product -> product.getName().equals("Green Apple"))
+                .verifyComplete();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void findById_ShouldNotCacheStockLoadThatRacedWithInvalidation() throws InterruptedException {
+        productCache = new ProductCache(100, Duration.ofMinutes(10), Duration.ofMillis(500), new SimpleMeterRegistry());
+        productCache.findById("1", () -> Mono.just(product("1", "Apple", 10)), Mono::empty).block();
+        Thread.sleep(600);
+        Sinks.One<Integer> stale = Sinks.one();
+
+        // Only the stock has expired, so it is reloaded; a restock lands while it is in flight.
+        StepVerifier.create(productCache.findById("1", Mono::empty, stale::asMono))
+                .then(() -> {
+                    productCache.invalidate("1");
+                    productCache.findById("1", () -> Mono.just(product("1", "Apple", 7)), Mono::empty).block();
+                })
+                .then(() -> stale.tryEmitValue(10))
+                .expectNextMatches(product -> product.getQuantity().getValue() == 10)
+                .verifyComplete();
+
+        StepVerifier.create(productCache.findById("1", Mono::empty, () -> Mono.just(-1)))
+                .expectNextMatches(product -> product.getQuantity().getValue() == 7)
+                .verifyComplete();
+    }
+
+    @Test
+    void findAllByIds_ShouldNotCacheLoadThatRacedWithInvalidation() {
+        Sinks.Many<Product> stale = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(productCache.findAllByIds(List.of("1"), ids -> {
+                    loads.incrementAndGet();
+                    return stale.asFlux();
+                }))
+                .then(() -> productCache.invalidate("1"))
+                .then(() -> {
+                    stale.tryEmitNext(product("1", "Apple", 10));
+                    stale.tryEmitComplete();
+                })
+                .expectNextMatches(found -> found.get("1").getName().equals("Apple"))
+                .verifyComplete();
+
+        StepVerifier.create(productCache.findById("1", () -> load(Mono.just(product("1", "Green Apple", 5))), Mono::empty))
+                .expectNextMatches(product -> product.getName().equals("Green Apple"))
+                .verifyComplete();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void findById_ShouldCacheLoadWhenNothingWasWritten() {
+        productCache.findById("1", () -> load(Mono.just(product("1", "Apple", 10))), Mono::empty).block();
+
+        StepVerifier.create(productCache.findById("1", () -> load(Mono.just(product("1", "Other", 1))), Mono::empty))
+                .expectNextMatches(product -> product.getName().equals("Apple"))
+                .verifyComplete();
+        assertEquals(1, loads.get());
+    }
+
+    private Mono<Product> load(Mono<Product> row) {
+        loads.incrementAndGet();
+        return row;
+    }
+
+    private static Product product(String id, String name, int quantity) {
+        return new Product(id, name, null, Money.of(BigDecimal.ONE, "USD"), Category.of("cat1", "Fruits"),
+                Quantity.of(quantity, "piece"), null, null, null);
+    }
+}
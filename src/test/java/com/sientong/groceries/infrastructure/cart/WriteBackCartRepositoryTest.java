@@ -0,0 +1,167 @@
+package com.sientong.groceries.infrastructure.cart;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.spy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sientong.groceries.config.TestDatabase;
+import com.sientong.groceries.domain.cart.CartItem;
+import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.infrastructure.persistence.adapter.CartRepositoryAdapter;
+import com.sientong.groceries.infrastructure.persistence.repository.ReactiveCartItemRepository;
+import com.sientong.groceries.infrastructure.persistence.repository.ReactiveCartRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class WriteBackCartRepositoryTest {
+    private DatabaseClient databaseClient;
+    private CartRepositoryAdapter delegate;
+    private SimpleMeterRegistry meterRegistry;
+    private WriteBackCartRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.assumeAvailable();
+        TestDatabase.truncate("cart_journal", "cart_items", "carts", "products", "categories", "users");
+        databaseClient = TestDatabase.databaseClient();
+        delegate = spy(new CartRepositoryAdapter(TestDatabase.repository(ReactiveCartRepository.class),
+                TestDatabase.repository(ReactiveCartItemRepository.class), databaseClient,
+                TestDatabase.transactionalOperator()));
+        repository = newRepository();
+        databaseClient.sql("""
+                        INSERT INTO users (id, email, password, role) VALUES ('user1', 'user1@example.com', 'secret', 'CUSTOMER');
+                        INSERT INTO categories (id, name, created_at) VALUES ('cat1', 'Fruits', CURRENT_TIMESTAMP);
+                        INSERT INTO products (id, name, price, currency, quantity, unit, category_id, created_at, updated_at)
+                        VALUES ('p1', 'Apple', 1.50, 'USD', 100, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+                               ('p2', 'Banana', 0.25, 'USD', 100, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+                        """)
+                .then()
+                .block();
+    }
+
+    @Test
+    void flush_ShouldKeepCartChangedDuringFlushDirtyWithItsSnapshot() throws Exception {
+        add(repository, "p1", 2);
+        Sinks.Empty<Void> gate = Sinks.empty();
+        doAnswer(invocation -> gate.asMono().then(Mono.defer(() -> callRealMethod(invocation))))
+                .when(delegate).saveAll(any());
+
+        CompletableFuture<Void> flushed = repository.flush().toFuture();
+        add(repository, "p2", 1);
+        gate.tryEmitEmpty();
+        flushed.get(5, TimeUnit.SECONDS);
+
+        // The flush wrote the cart as it was when the flush started and dropped only that
+        // snapshot; the later change is still pending, with its snapshot.
+        assertEquals(1, count("SELECT COUNT(*) FROM cart_items"));
+        assertEquals(1, count("SELECT COUNT(*) FROM cart_journal WHERE user_id = 'user1'"));
+        assertEquals(1.0, dirtyCarts());
+        StepVerifier.create(repository.findByUserId("user1"))
+                .expectNextMatches(cart -> cart.getItems().size() == 2)
+                .verifyComplete();
+
+        doCallRealMethod().when(delegate).saveAll(any());
+        repository.flush().block();
+
+        assertEquals(2, count("SELECT COUNT(*) FROM cart_items"));
+        assertEquals(0, count("SELECT COUNT(*) FROM cart_journal"));
+        assertEquals(0.0, dirtyCarts());
+    }
+
+    @Test
+    void findByUserId_ShouldRestoreLatestSnapshotOverStoredCart() {
+        delegate.addItem("user1", item("p1", 2), line -> Mono.empty()).block();
+        add(repository, "p1", 3);
+        add(repository, "p2", 1);
+
+        // A fresh store, as after a crash that lost the unflushed changes held in memory.
+        WriteBackCartRepository restarted = newRepository();
+
+        StepVerifier.create(restarted.findByUserId("user1"))
+                .expectNextMatches(cart -> cart.getItems().size() == 2
+                        && cart.getItems().stream().anyMatch(line -> line.getProductId().equals("p1") && line.getQuantity() == 5))
+                .verifyComplete();
+        assertEquals(2, count("SELECT quantity FROM cart_items WHERE product_id = 'p1'"));
+
+        restarted.flush().block();
+
+        assertEquals(5, count("SELECT quantity FROM cart_items WHERE product_id = 'p1'"));
+        assertEquals(2, count("SELECT COUNT(*) FROM cart_items"));
+        assertEquals(0, count("SELECT COUNT(*) FROM cart_journal"));
+    }
+
+    @Test
+    void recoverJournal_ShouldRestoreLeftoverCartsWithoutWaitingForTheirUsers() throws InterruptedException {
+        add(repository, "p1", 2);
+        WriteBackCartRepository restarted = newRepository();
+
+        restarted.recoverJournal();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dirtyCarts() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        restarted.flush().block();
+
+        assertEquals(2, count("SELECT quantity FROM cart_items WHERE product_id = 'p1'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM cart_journal"));
+    }
+
+    private WriteBackCartRepository newRepository() {
+        meterRegistry = new SimpleMeterRegistry();
+        return new WriteBackCartRepository(delegate, databaseClient, TestDatabase.transactionalOperator(),
+                new ObjectMapper().findAndRegisterModules(), meterRegistry, 1000, Duration.ofMinutes(30), 500);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Mono<Void> callRealMethod(InvocationOnMock invocation) {
+        try {
+            return (Mono<Void>) invocation.callRealMethod();
+        } catch (Throwable ex) {
+            return Mono.error(ex);
+        }
+    }
+
+    private double dirtyCarts() {
+        return meterRegistry.get("carts.dirty").gauge().value();
+    }
+
+    private static void add(WriteBackCartRepository repository, String productId, int quantity) {
+        repository.addItem("user1", item(productId, quantity), line -> Mono.empty()).block();
+    }
+
+    private long count(String sql) {
+        return databaseClient.sql(sql)
+                .map((row, metadata) -> ((Number) row.get(0)).longValue())
+                .one()
+                .block();
+    }
+
+    private static CartItem item(String productId, int quantity) {
+        return CartItem.builder()
+                .id(UUID.randomUUID().toString())
+                .productId(productId)
+                .name(productId)
+                .description("Fresh " + productId)
+                .price(Money.of(BigDecimal.valueOf(1.50), "USD"))
+                .quantity(quantity)
+                .unit("piece")
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.sientong.groceries.infrastructure.concurrency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class MutationLanesTest {
+    private SimpleMeterRegistry meterRegistry;
+    private MutationLanes<String> lanes;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lanes = new MutationLanes<>("test", meterRegistry);
+    }
+
+    @Test
+    void shouldRunMutationsOnOneKeyInOrder() {
+        List<String> log = new ArrayList<>();
+        Sinks.Empty<Void> first = Sinks.empty();
+
+        lanes.execute("user1", () -> first.asMono().doOnSuccess(v -> log.add("first"))).subscribe();
+        lanes.execute("user1", () -> Mono.fromRunnable(() -> log.add("second"))).subscribe();
+
+        assertEquals(List.of(), log);
+        assertEquals(2, lanes.pending());
+        first.tryEmitEmpty();
+        assertEquals(List.of("first", "second"), log);
+        assertEquals(0, lanes.pending());
+        assertEquals(1.0, meterRegistry.get("mutation.lanes.calls").tag("outcome", "queued").counter().count());
+    }
+
+    @Test
+    void shouldNotBlockOtherKeys() {
+        Sinks.Empty<Void> blocked = Sinks.empty();
+        lanes.execute("user1", blocked::asMono).subscribe();
+
+        StepVerifier.create(lanes.execute("user2", () -> Mono.just("done")))
+                .expectNext("done")
+                .verifyComplete();
+        assertEquals(1, lanes.pending());
+    }
+
+    @Test
+    void shouldKeepOrderWhenWaitingMutationIsCancelled() {
+        List<String> log = new ArrayList<>();
+        Sinks.Empty<Void> first = Sinks.empty();
+
+        lanes.execute("user1", () -> first.asMono().doOnSuccess(v -> log.add("first"))).subscribe();
+        Disposable second = lanes.execute("user1", () -> Mono.fromRunnable(() -> log.add("second"))).subscribe();
+        second.dispose();
+        lanes.execute("user1", () -> Mono.fromRunnable(() -> log.add("third"))).subscribe();
+
+        assertEquals(List.of(), log);
+        first.tryEmitEmpty();
+        assertEquals(List.of("first", "third"), log);
+        assertEquals(0, lanes.pending());
+    }
+}
@@ -0,0 +1,94 @@
+package com.sientong.groceries.infrastructure.inventory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mockito.Mockito;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.sientong.groceries.config.TestDatabase;
+import com.sientong.groceries.domain.inventory.StockAlertService;
+import com.sientong.groceries.infrastructure.cache.ProductCache;
+import com.sientong.groceries.infrastructure.persistence.adapter.ProductRepositoryAdapter;
+import com.sientong.groceries.infrastructure.persistence.repository.ReactiveProductRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Checkout throughput on one flash-sale product against the test database, through
+ * {@link ProductRepositoryAdapter#decrementStock}: once for a plain product, whose sales
+ * queue on its products row lock, and once for a hot SKU, whose sales are taken from a
+ * {@link StripedStockCounter} and journaled without locking the row. Each worker sells one
+ * unit per checkout.
+ * <p>
+ * Not part of the test suite: it rebuilds the groceries_test database (see
+ * {@link TestDatabase}) and fills it with its own products. Run after {@code mvn test-compile}
+ * with {@code java [-Dworkers=32] [-Dseconds=10] \
+ * -cp target/test-classes:target/classes:<test classpath> \
+ * com.sientong.groceries.infrastructure.inventory.StockContentionBenchmark}.
+ */
+public class StockContentionBenchmark {
+    private static final String ROW_PRODUCT = "bench-row";
+    private static final String HOT_PRODUCT = "bench-hot";
+    private static final int STOCK = 100_000_000;
+
+    public static void main(String[] args) {
+        int workers = Integer.getInteger("workers", 32);
+        Duration duration = Duration.ofSeconds(Integer.getInteger("seconds", 10));
+
+        TestDatabase.assumeAvailable();
+        DatabaseClient databaseClient = TestDatabase.databaseClient();
+        TransactionalOperator transactionalOperator = TestDatabase.transactionalOperator();
+        databaseClient.sql("INSERT INTO categories (id, name, created_at) VALUES ('bench', 'Bench', CURRENT_TIMESTAMP)")
+                .then()
+                .block();
+        databaseClient.sql("""
+                        INSERT INTO products (id, name, price, currency, quantity, unit, category_id, created_at, updated_at)
+                        VALUES (:row, 'Bench Row', 1.00, 'USD', :stock, 'piece', 'bench', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+                               (:hot, 'Bench Hot', 1.00, 'USD', :stock, 'piece', 'bench', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+                        """)
+                .bind("row", ROW_PRODUCT)
+                .bind("hot", HOT_PRODUCT)
+                .bind("stock", STOCK)
+                .then()
+                .block();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ProductCache productCache = new ProductCache(10, Duration.ofMinutes(1), Duration.ofSeconds(1), meterRegistry);
+        StockAlertService stockAlertService = Mockito.mock(StockAlertService.class);
+        HotStockCounters hotStockCounters = new HotStockCounters(databaseClient, productCache, stockAlertService,
+                List.of(HOT_PRODUCT));
+        ProductRepositoryAdapter adapter = new ProductRepositoryAdapter(TestDatabase.repository(ReactiveProductRepository.class),
+                databaseClient, productCache, transactionalOperator, hotStockCounters,
+                new StockShards(databaseClient, transactionalOperator, productCache, stockAlertService),
+                stockAlertService);
+
+        System.out.printf("%6s %12s %10s%n", "stock", "sales/s", "failed");
+        run(adapter, "row", ROW_PRODUCT, workers, duration);
+        run(adapter, "hot", HOT_PRODUCT, workers, duration);
+        hotStockCounters.flush().block();
+    }
+
+    private static void run(ProductRepositoryAdapter adapter, String label, String productId, int workers,
+            Duration duration) {
+        AtomicLong sold = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+        Mono<Boolean> sale = adapter.decrementStock(null, Map.of(productId, 1))
+                .thenReturn(true)
+                .onErrorReturn(false);
+
+        Flux.range(0, workers)
+                .flatMap(worker -> sale
+                        .doOnNext(taken -> (taken ? sold : failed).incrementAndGet())
+                        .repeat(() -> System.nanoTime() < deadline), workers)
+                .blockLast();
+
+        System.out.printf("%6s %12.0f %10d%n", label, sold.get() / (duration.toNanos() / 1e9), failed.get());
+    }
+}
@@ -0,0 +1,170 @@
+package com.sientong.groceries.infrastructure.inventory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.sientong.groceries.config.TestDatabase;
+import com.sientong.groceries.domain.inventory.StockAlertService;
+import com.sientong.groceries.infrastructure.cache.ProductCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class StockShardsTest {
+    private DatabaseClient databaseClient;
+    private TransactionalOperator transactionalOperator;
+    private StockShards stockShards;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.assumeAvailable();
+        TestDatabase.truncate("products", "categories");
+        databaseClient = TestDatabase.databaseClient();
+        transactionalOperator = TestDatabase.transactionalOperator();
+        stockShards = new StockShards(databaseClient, transactionalOperator,
+                new ProductCache(10, Duration.ofMinutes(1), Duration.ofSeconds(1), new SimpleMeterRegistry()),
+                mock(StockAlertService.class));
+        databaseClient.sql("""
+                        INSERT INTO categories (id, name, created_at) VALUES ('cat1', 'Fruits', CURRENT_TIMESTAMP);
+                        INSERT INTO products (id, name, price, currency, quantity, unit, category_id, created_at, updated_at)
+                        VALUES ('p1', 'Apple', 1.50, 'USD', 0, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+                        """)
+                .then()
+                .block();
+    }
+
+    @Test
+    void reshard_ShouldSpreadStockEvenly() {
+        shards(10, 4);
+
+        assertEquals(List.of(3, 3, 2, 2), quantities());
+        assertEquals(10, productQuantity());
+    }
+
+    @Test
+    void take_ShouldTakeFromOneShard() {
+        shards(10, 4);
+
+        StepVerifier.create(take(2))
+                .expectNext(true)
+                .verifyComplete();
+        List<Integer> before = List.of(3, 3, 2, 2);
+        List<Integer> after = quantities();
+        int changed = 0;
+        for (int shard = 0; shard < before.size(); shard++) {
+            if (!before.get(shard).equals(after.get(shard))) {
+                assertEquals(before.get(shard) - 2, after.get(shard));
+                changed++;
+            }
+        }
+        assertEquals(1, changed);
+    }
+
+    @Test
+    void take_ShouldRebalanceWhenNoSingleShardHoldsEnough() {
+        shards(4, 4);
+
+        StepVerifier.create(take(3))
+                .expectNext(true)
+                .verifyComplete();
+        assertEquals(List.of(1, 0, 0, 0), quantities());
+    }
+
+    @Test
+    void take_ShouldReportShortStockWithoutChangingShards() {
+        shards(4, 2);
+
+        StepVerifier.create(take(5))
+                .expectNext(false)
+                .verifyComplete();
+        assertEquals(List.of(2, 2), quantities());
+    }
+
+    @Test
+    void take_ShouldReportShortStockWithoutWaitingForLockedShards() throws SQLException {
+        shards(4, 2);
+
+        try (Connection other = lockAllShards()) {
+            StepVerifier.create(take(5))
+                    .expectNext(false)
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(5));
+            other.rollback();
+        }
+    }
+
+    @Test
+    void take_ShouldWaitForOneBusyShardRatherThanRebalance() throws Exception {
+        shards(10, 2);
+        databaseClient.sql("UPDATE product_stock_shards SET quantity = CASE shard WHEN 0 THEN 8 ELSE 2 END WHERE product_id = 'p1'")
+                .then()
+                .block();
+
+        CompletableFuture<Boolean> taken;
+        try (Connection other = lockAllShards()) {
+            taken = take(1).toFuture();
+            Thread.sleep(300);
+            assertFalse(taken.isDone());
+            other.commit();
+        }
+
+        assertTrue(taken.get(5, TimeUnit.SECONDS));
+        // A rebalance would have spread the remaining 9 as 5 and 4.
+        List<Integer> quantities = quantities();
+        assertTrue(quantities.equals(List.of(7, 2)) || quantities.equals(List.of(8, 1)), quantities.toString());
+    }
+
+    private Mono<Boolean> take(int quantity) {
+        return stockShards.take("p1", quantity).as(transactionalOperator::transactional);
+    }
+
+    private void shards(int quantity, int shards) {
+        databaseClient.sql("UPDATE products SET quantity = :quantity WHERE id = 'p1'")
+                .bind("quantity", quantity)
+                .then()
+                .then(stockShards.reshard("p1", shards))
+                .block();
+    }
+
+    private List<Integer> quantities() {
+        return databaseClient.sql("SELECT quantity FROM product_stock_shards WHERE product_id = 'p1' ORDER BY shard")
+                .map((row, metadata) -> row.get("quantity", Integer.class))
+                .all()
+                .collectList()
+                .block();
+    }
+
+    private int productQuantity() {
+        return databaseClient.sql("SELECT quantity FROM products WHERE id = 'p1'")
+                .map((row, metadata) -> row.get("quantity", Integer.class))
+                .one()
+                .block();
+    }
+
+    // Another checkout holding every shard of the product until the returned connection's
+    // transaction ends.
+    private static Connection lockAllShards() throws SQLException {
+        Connection connection = TestDatabase.jdbcConnection();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SELECT * FROM product_stock_shards WHERE product_id = 'p1' FOR UPDATE");
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,81 @@
+package com.sientong.groceries.infrastructure.inventory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class StripedStockCounterTest {
+
+    @Test
+    void shouldRoundStripesUpToPowerOfTwo() {
+        assertEquals(1, new StripedStockCounter(10, 1).stripes());
+        assertEquals(8, new StripedStockCounter(10, 6).stripes());
+        assertEquals(64, new StripedStockCounter(10, 1000).stripes());
+    }
+
+    @Test
+    void shouldTakeAcrossStripesWhenHomeStripeRunsDry() {
+        StripedStockCounter counter = new StripedStockCounter(10, 8);
+
+        assertTrue(counter.tryTake(9));
+        assertEquals(1, counter.available());
+    }
+
+    @Test
+    void shouldTakeNothingWhenShort() {
+        StripedStockCounter counter = new StripedStockCounter(5, 4);
+
+        assertFalse(counter.tryTake(6));
+        assertEquals(5, counter.available());
+    }
+
+    @Test
+    void shouldDrainEveryStripe() {
+        StripedStockCounter counter = new StripedStockCounter(13, 4);
+        counter.add(2);
+
+        assertEquals(15, counter.drain());
+        assertEquals(0, counter.available());
+        assertFalse(counter.tryTake(1));
+    }
+
+    @Test
+    void shouldNeverOversellUnderContention() throws Exception {
+        int stock = 10_000;
+        int threads = 8;
+        StripedStockCounter counter = new StripedStockCounter(stock, threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> sold = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                sold.add(executor.submit(() -> {
+                    int taken = 0;
+                    for (int attempt = 0; attempt < stock; attempt++) {
+                        if (counter.tryTake(1 + attempt % 3)) {
+                            taken += 1 + attempt % 3;
+                        }
+                    }
+                    return taken;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : sold) {
+                total += future.get(30, TimeUnit.SECONDS);
+            }
+
+            assertEquals(stock, total + counter.available());
+            assertTrue(counter.available() < 3);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
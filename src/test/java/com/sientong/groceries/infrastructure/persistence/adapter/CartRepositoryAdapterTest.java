@@ -0,0 +1,126 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import com.sientong.groceries.config.TestDatabase;
+import com.sientong.groceries.domain.cart.Cart;
+import com.sientong.groceries.domain.cart.CartItem;
+import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.infrastructure.persistence.repository.ReactiveCartItemRepository;
+import com.sientong.groceries.infrastructure.persistence.repository.ReactiveCartRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class CartRepositoryAdapterTest {
+    private DatabaseClient databaseClient;
+    private CartRepositoryAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.assumeAvailable();
+        TestDatabase.truncate("cart_items", "carts", "products", "categories", "users");
+        databaseClient = TestDatabase.databaseClient();
+        adapter = new CartRepositoryAdapter(TestDatabase.repository(ReactiveCartRepository.class),
+                TestDatabase.repository(ReactiveCartItemRepository.class), databaseClient,
+                TestDatabase.transactionalOperator());
+        databaseClient.sql("""
+                        INSERT INTO users (id, email, password, role) VALUES ('user1', 'user1@example.com', 'secret', 'CUSTOMER');
+                        INSERT INTO categories (id, name, created_at) VALUES ('cat1', 'Fruits', CURRENT_TIMESTAMP);
+                        INSERT INTO products (id, name, price, currency, quantity, unit, category_id, created_at, updated_at)
+                        VALUES ('p1', 'Apple', 1.50, 'USD', 100, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+                               ('p2', 'Banana', 0.25, 'USD', 100, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+                        """)
+                .then()
+                .block();
+    }
+
+    @Test
+    void addItem_ShouldCreateCartForProductWithoutDescription() {
+        StepVerifier.create(adapter.addItem("user1", item("p1", null, BigDecimal.valueOf(1.50), 2), line -> Mono.empty()))
+                .expectNextMatches(cart -> cart.getUserId().equals("user1")
+                        && cart.getItems().size() == 1
+                        && cart.getTotal().getAmount().compareTo(new BigDecimal("3.00")) == 0)
+                .verifyComplete();
+        assertEquals(1, count("SELECT COUNT(*) FROM cart_items WHERE product_id = 'p1'"));
+    }
+
+    @Test
+    void addItem_ShouldMergeRepeatedProductIntoOneLine() {
+        adapter.addItem("user1", item("p1", "Fresh apple", BigDecimal.valueOf(1.50), 2), line -> Mono.empty()).block();
+        adapter.addItem("user1", item("p2", "Ripe banana", BigDecimal.valueOf(0.25), 4), line -> Mono.empty()).block();
+
+        StepVerifier.create(adapter.addItem("user1", item("p1", "Fresh apple", BigDecimal.valueOf(1.50), 3),
+                        line -> Mono.empty()))
+                .expectNextMatches(cart -> cart.getItems().size() == 2
+                        && cart.getItems().stream().anyMatch(line -> line.getProductId().equals("p1") && line.getQuantity() == 5)
+                        && cart.getTotal().getAmount().compareTo(new BigDecimal("8.50")) == 0)
+                .verifyComplete();
+        assertEquals(1, count("SELECT COUNT(*) FROM carts WHERE user_id = 'user1'"));
+    }
+
+    @Test
+    void addItem_ShouldPassMergedLineToBeforeCommitAndRollBackWhenItFails() {
+        adapter.addItem("user1", item("p1", "Fresh apple", BigDecimal.valueOf(1.50), 2), line -> Mono.empty()).block();
+
+        StepVerifier.create(adapter.addItem("user1", item("p1", "Fresh apple", BigDecimal.valueOf(1.50), 3),
+                        line -> line.getQuantity() == 5
+                                ? Mono.error(new IllegalStateException("out of stock"))
+                                : Mono.empty()))
+                .expectErrorMessage("out of stock")
+                .verify();
+        assertEquals(2, count("SELECT quantity FROM cart_items WHERE product_id = 'p1'"));
+    }
+
+    @Test
+    void findByUserId_ShouldGiveConcurrentFirstReadsTheSameCart() {
+        StepVerifier.create(Flux.range(0, 8)
+                        .flatMap(i -> adapter.findByUserId("user1"))
+                        .map(Cart::getId)
+                        .distinct()
+                        .count())
+                .expectNext(1L)
+                .verifyComplete();
+        assertEquals(1, count("SELECT COUNT(*) FROM carts WHERE user_id = 'user1'"));
+    }
+
+    @Test
+    void save_ShouldMergeLineForProductAddedSinceCartWasLoaded() {
+        Cart cart = adapter.findByUserId("user1").block();
+        adapter.addItem("user1", item("p1", "Fresh apple", BigDecimal.valueOf(1.50), 2), line -> Mono.empty()).block();
+        cart.addItem(item("p1", "Fresh apple", BigDecimal.valueOf(1.50), 4));
+
+        StepVerifier.create(adapter.save(cart))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, count("SELECT COUNT(*) FROM cart_items"));
+        assertEquals(4, count("SELECT quantity FROM cart_items WHERE product_id = 'p1'"));
+    }
+
+    private long count(String sql) {
+        return databaseClient.sql(sql)
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one()
+                .block();
+    }
+
+    private static CartItem item(String productId, String description, BigDecimal price, int quantity) {
+        return CartItem.builder()
+                .id(UUID.randomUUID().toString())
+                .productId(productId)
+                .name(productId)
+                .description(description)
+                .price(Money.of(price, "USD"))
+                .quantity(quantity)
+                .unit("piece")
+                .build();
+    }
+}
@@ -0,0 +1,85 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import com.sientong.groceries.config.TestDatabase;
+
+class CatalogVersionRepositoryAdapterTest {
+    private DatabaseClient databaseClient;
+    private CatalogVersionRepositoryAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.assumeAvailable();
+        TestDatabase.truncate("products", "categories");
+        databaseClient = TestDatabase.databaseClient();
+        adapter = new CatalogVersionRepositoryAdapter(databaseClient);
+        execute("""
+                INSERT INTO categories (id, name, created_at) VALUES ('cat1', 'Fruits', CURRENT_TIMESTAMP);
+                INSERT INTO products (id, name, price, currency, quantity, unit, category_id, created_at, updated_at)
+                VALUES ('p1', 'Apple', 1.50, 'USD', 10, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+                """);
+    }
+
+    @Test
+    void findCurrent_ShouldChangeWhenListedProductFieldsChange() {
+        long version = adapter.findCurrent().block();
+
+        execute("UPDATE products SET price = 1.75 WHERE id = 'p1'");
+
+        assertNotEquals(version, adapter.findCurrent().block());
+    }
+
+    @Test
+    void findCurrent_ShouldIgnoreStockWritesThatKeepProductInStock() {
+        long version = adapter.findCurrent().block();
+
+        execute("UPDATE products SET quantity = 3, updated_at = CURRENT_TIMESTAMP WHERE id = 'p1'");
+
+        assertEquals(version, adapter.findCurrent().block());
+    }
+
+    @Test
+    void findCurrent_ShouldChangeWhenProductGoesOutOfStock() {
+        long version = adapter.findCurrent().block();
+
+        execute("UPDATE products SET quantity = 0 WHERE id = 'p1'");
+
+        assertNotEquals(version, adapter.findCurrent().block());
+    }
+
+    @Test
+    void findCurrent_ShouldChangeWhenCategoriesChange() {
+        long version = adapter.findCurrent().block();
+
+        execute("INSERT INTO categories (id, name, created_at) VALUES ('cat2', 'Dairy', CURRENT_TIMESTAMP)");
+
+        assertNotEquals(version, adapter.findCurrent().block());
+    }
+
+    @Test
+    void findCurrent_ShouldBeBumpedOncePerTransaction() {
+        long before = adapter.findCurrent().block();
+
+        databaseClient.sql("UPDATE products SET name = 'Green Apple' WHERE id = 'p1'")
+                .then()
+                .then(databaseClient.sql("""
+                                INSERT INTO products (id, name, price, currency, quantity, unit, category_id, created_at, updated_at)
+                                VALUES ('p2', 'Pear', 2.00, 'USD', 5, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+                                """)
+                        .then())
+                .as(TestDatabase.transactionalOperator()::transactional)
+                .block();
+
+        assertEquals(before + 1, adapter.findCurrent().block());
+    }
+
+    private void execute(String sql) {
+        databaseClient.sql(sql).then().block();
+    }
+}
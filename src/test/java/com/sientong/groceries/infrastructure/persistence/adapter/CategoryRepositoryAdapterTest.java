@@ -0,0 +1,215 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import com.sientong.groceries.config.TestDatabase;
+import com.sientong.groceries.domain.category.Category;
+import com.sientong.groceries.infrastructure.persistence.entity.CategoryEntity;
+import com.sientong.groceries.infrastructure.persistence.repository.ReactiveCategoryRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class CategoryRepositoryAdapterTest {
+    private DatabaseClient databaseClient;
+    private CatalogVersionRepositoryAdapter catalogVersionRepository;
+    private CategoryRepositoryAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.assumeAvailable();
+        TestDatabase.truncate("products", "categories");
+        databaseClient = TestDatabase.databaseClient();
+        catalogVersionRepository = new CatalogVersionRepositoryAdapter(databaseClient);
+        adapter = new CategoryRepositoryAdapter(TestDatabase.repository(ReactiveCategoryRepository.class), databaseClient,
+                catalogVersionRepository);
+        execute("""
+                INSERT INTO categories (id, name, created_at)
+                VALUES ('cat1', 'Fruits', CURRENT_TIMESTAMP), ('cat2', 'Dairy', CURRENT_TIMESTAMP);
+                INSERT INTO products (id, name, price, currency, quantity, unit, category_id, created_at, updated_at)
+                VALUES ('p1', 'Apple', 1.50, 'USD', 10, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+                       ('p2', 'Banana', 0.25, 'USD', 0, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+                       ('p3', 'Cherry', 4.00, 'USD', 5, 'box', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+                """);
+    }
+
+    @Test
+    void findFacets_ShouldCountProductsAndStockPerCategory() {
+        // Dairy has never had a product, so it has no counts row at all.
+        assertEquals(List.of("Dairy 0/0", "Fruits 3/2"), facets());
+    }
+
+    @Test
+    void findFacets_ShouldFollowStockChanges() {
+        execute("UPDATE products SET quantity = 0 WHERE id = 'p1'");
+        assertEquals(List.of("Dairy 0/0", "Fruits 3/1"), facets());
+
+        execute("UPDATE products SET quantity = 7 WHERE id IN ('p1', 'p2')");
+        assertEquals(List.of("Dairy 0/0", "Fruits 3/3"), facets());
+
+        // A change that keeps every product in stock leaves the counts alone.
+        execute("UPDATE products SET quantity = quantity - 1");
+        assertEquals(List.of("Dairy 0/0", "Fruits 3/3"), facets());
+    }
+
+    @Test
+    void findFacets_ShouldFollowProductsBetweenCategoriesAndOutOfTheCatalog() {
+        execute("UPDATE products SET category_id = 'cat2' WHERE id IN ('p1', 'p2')");
+        assertEquals(List.of("Dairy 2/1", "Fruits 1/1"), facets());
+
+        execute("DELETE FROM products WHERE id IN ('p1', 'p3')");
+        assertEquals(List.of("Dairy 1/0", "Fruits 0/0"), facets());
+
+        execute("""
+                INSERT INTO products (id, name, price, currency, quantity, unit, category_id, created_at, updated_at)
+                VALUES ('p4', 'Milk', 0.99, 'USD', 20, 'bottle', 'cat2', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+                """);
+        assertEquals(List.of("Dairy 2/1", "Fruits 0/0"), facets());
+    }
+
+    @Test
+    void findAll_ShouldServeSnapshotUntilRefreshed() {
+        assertEquals(List.of("Dairy", "Fruits"), names(adapter));
+        execute("INSERT INTO categories (id, name, created_at) VALUES ('cat3', 'Bakery', CURRENT_TIMESTAMP)");
+        assertEquals(List.of("Dairy", "Fruits"), names(adapter));
+
+        adapter.refreshSnapshot().block();
+
+        assertEquals(List.of("Bakery", "Dairy", "Fruits"), names(adapter));
+        StepVerifier.create(adapter.findById("cat3").map(Category::getName))
+                .expectNext("Bakery")
+                .verifyComplete();
+    }
+
+    @Test
+    void findCatalogVersion_ShouldBeVersionSnapshotWasLoadedAt() {
+        names(adapter);
+        long loadedAt = adapter.findCatalogVersion().block();
+        execute("INSERT INTO categories (id, name, created_at) VALUES ('cat3', 'Bakery', CURRENT_TIMESTAMP)");
+        long current = catalogVersionRepository.findCurrent().block();
+
+        assertTrue(current > loadedAt);
+        assertEquals(loadedAt, adapter.findCatalogVersion().block());
+
+        adapter.refreshSnapshot().block();
+
+        assertEquals(current, adapter.findCatalogVersion().block());
+        assertEquals(List.of("Bakery", "Dairy", "Fruits"), names(adapter));
+    }
+
+    @Test
+    void save_ShouldMoveSnapshotToVersionCoveringTheWrite() {
+        names(adapter);
+
+        adapter.save(new Category("cat2", "Bakery")).block();
+
+        assertEquals(catalogVersionRepository.findCurrent().block(), adapter.findCatalogVersion().block());
+        assertEquals(List.of("Bakery", "Fruits"), names(adapter));
+    }
+
+    @Test
+    void findById_ShouldReturnCopiesOfSnapshot() {
+        adapter.findById("cat1").block().setName("Changed by caller");
+
+        StepVerifier.create(adapter.findById("cat1").map(Category::getName))
+                .expectNext("Fruits")
+                .verifyComplete();
+    }
+
+    @Test
+    void save_ShouldUpdateSnapshotWithoutReloading() {
+        ReactiveCategoryRepository repository = mock(ReactiveCategoryRepository.class);
+        when(repository.findAll()).thenReturn(Flux.just(entity("cat1", "Fruits")));
+        when(repository.save(any(CategoryEntity.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(repository.deleteById("cat1")).thenReturn(Mono.empty());
+        CategoryRepositoryAdapter cached = new CategoryRepositoryAdapter(repository, databaseClient, catalogVersionRepository);
+        names(cached);
+
+        cached.save(new Category("cat2", "Dairy")).block();
+        cached.deleteById("cat1").block();
+
+        assertEquals(List.of("Dairy"), names(cached));
+        verify(repository, times(1)).findAll();
+    }
+
+    @Test
+    void findAll_ShouldNotInstallLoadThatRacedWithWrite() {
+        ReactiveCategoryRepository repository = mock(ReactiveCategoryRepository.class);
+        Sinks.Many<CategoryEntity> stale = Sinks.many().unicast().onBackpressureBuffer();
+        when(repository.findAll()).thenReturn(stale.asFlux(),
+                Flux.just(entity("cat1", "Fruits"), entity("cat2", "Dairy")));
+        when(repository.save(any(CategoryEntity.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        CategoryRepositoryAdapter cached = new CategoryRepositoryAdapter(repository, databaseClient, catalogVersionRepository);
+
+        Mono<List<String>> racing = cached.findAll().map(Category::getName).collectList().cache();
+        racing.subscribe();
+        cached.save(new Category("cat2", "Dairy")).block();
+        stale.tryEmitNext(entity("cat1", "Fruits"));
+        stale.tryEmitComplete();
+
+        // The racing read gets what it loaded, but the next one loads again.
+        assertEquals(List.of("Fruits"), racing.block());
+        assertEquals(List.of("Dairy", "Fruits"), names(cached));
+        verify(repository, times(2)).findAll();
+    }
+
+    @Test
+    void refreshSnapshot_ShouldKeepWriteThatRacedWithIt() {
+        ReactiveCategoryRepository repository = mock(ReactiveCategoryRepository.class);
+        Sinks.Many<CategoryEntity> stale = Sinks.many().unicast().onBackpressureBuffer();
+        when(repository.findAll()).thenReturn(Flux.just(entity("cat1", "Fruits")), stale.asFlux());
+        when(repository.save(any(CategoryEntity.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        CategoryRepositoryAdapter cached = new CategoryRepositoryAdapter(repository, databaseClient, catalogVersionRepository);
+        names(cached);
+
+        Mono<Void> refresh = cached.refreshSnapshot().cache();
+        refresh.subscribe();
+        cached.save(new Category("cat2", "Dairy")).block();
+        stale.tryEmitNext(entity("cat1", "Fruits"));
+        stale.tryEmitComplete();
+        refresh.block();
+
+        assertEquals(List.of("Dairy", "Fruits"), names(cached));
+    }
+
+    private static List<String> names(CategoryRepositoryAdapter adapter) {
+        return adapter.findAll()
+                .map(Category::getName)
+                .collectList()
+                .block();
+    }
+
+    private static CategoryEntity entity(String id, String name) {
+        return CategoryEntity.builder()
+                .id(id)
+                .name(name)
+                .build();
+    }
+
+    private List<String> facets() {
+        return adapter.findFacets()
+                .map(facet -> facet.getCategory().getName() + " " + facet.getProductCount() + "/" + facet.getInStockCount())
+                .collectList()
+                .block();
+    }
+
+    private void execute(String sql) {
+        databaseClient.sql(sql)
+                .then()
+                .block();
+    }
+}
@@ -0,0 +1,108 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import com.sientong.groceries.config.TestDatabase;
+import com.sientong.groceries.domain.order.OrderStatus;
+import com.sientong.groceries.domain.product.BestsellerRanking;
+import com.sientong.groceries.domain.product.CoPurchaseIndex;
+import com.sientong.groceries.domain.product.ProductRepository;
+import com.sientong.groceries.infrastructure.persistence.repository.ReactiveOrderItemRepository;
+import com.sientong.groceries.infrastructure.persistence.repository.ReactiveOrderRepository;
+
+import reactor.test.StepVerifier;
+
+class OrderRepositoryAdapterTest {
+    private DatabaseClient databaseClient;
+    private BestsellerRanking bestsellerRanking;
+    private CoPurchaseIndex coPurchaseIndex;
+    private OrderRepositoryAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.assumeAvailable();
+        TestDatabase.truncate("order_items", "orders", "products", "categories", "users");
+        databaseClient = TestDatabase.databaseClient();
+        bestsellerRanking = new BestsellerRanking(Duration.ZERO);
+        coPurchaseIndex = new CoPurchaseIndex();
+        adapter = new OrderRepositoryAdapter(TestDatabase.repository(ReactiveOrderRepository.class),
+                TestDatabase.repository(ReactiveOrderItemRepository.class), mock(ProductRepository.class),
+                bestsellerRanking, coPurchaseIndex, databaseClient);
+        databaseClient.sql("""
+                        INSERT INTO users (id, email, password, role) VALUES ('user1', 'user1@example.com', 'secret', 'CUSTOMER');
+                        INSERT INTO categories (id, name, created_at) VALUES ('cat1', 'Fruits', CURRENT_TIMESTAMP);
+                        INSERT INTO products (id, name, price, currency, quantity, unit, category_id, created_at, updated_at)
+                        VALUES ('p1', 'Apple', 1.50, 'USD', 100, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+                               ('p2', 'Banana', 0.25, 'USD', 100, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+                               ('p3', 'Cherry', 4.00, 'USD', 100, 'box', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+                        INSERT INTO orders (id, user_id, status, total_amount, created_at, updated_at)
+                        VALUES ('o1', 'user1', 'PENDING', 4.50, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+                        INSERT INTO order_items (id, order_id, product_id, product_name, unit_price, quantity, subtotal)
+                        VALUES ('i1', 'o1', 'p1', 'Apple', 1.50, 3, 4.50);
+                        """)
+                .then()
+                .block();
+    }
+
+    @Test
+    void updateStatus_ShouldTakeCancelledOrderOutOfBestsellers() {
+        LocalDate today = LocalDate.now();
+        bestsellerRanking.record("p1", "cat1", 3, today);
+        bestsellerRanking.record("p2", "cat1", 2, today);
+        assertEquals(List.of("p1", "p2"), bestsellerRanking.top(null, 1, 10, today));
+
+        StepVerifier.create(adapter.updateStatus("o1", OrderStatus.CANCELLED))
+                .expectNextMatches(order -> order.getStatus() == OrderStatus.CANCELLED)
+                .verifyComplete();
+
+        assertEquals(List.of("p2"), bestsellerRanking.top(null, 1, 10, today));
+    }
+
+    @Test
+    void updateStatus_ShouldTakeBackSalesOnlyOnceWhenCancelledTwice() {
+        LocalDate today = LocalDate.now();
+        bestsellerRanking.record("p1", "cat1", 3, today);
+        bestsellerRanking.record("p1", "cat1", 3, today);
+        bestsellerRanking.record("p2", "cat1", 2, today);
+        adapter.updateStatus("o1", OrderStatus.CANCELLED).block();
+
+        StepVerifier.create(adapter.updateStatus("o1", OrderStatus.CANCELLED))
+                .verifyComplete();
+
+        assertEquals(List.of("p1", "p2"), bestsellerRanking.top(null, 1, 10, today));
+    }
+
+    @Test
+    void loadCoPurchaseIndex_ShouldSkipCancelledOrders() throws InterruptedException {
+        databaseClient.sql("""
+                        INSERT INTO orders (id, user_id, status, total_amount, created_at, updated_at)
+                        VALUES ('o2', 'user1', 'CANCELLED', 1.75, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+                               ('o3', 'user1', 'DELIVERED', 5.50, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+                        INSERT INTO order_items (id, order_id, product_id, product_name, unit_price, quantity, subtotal)
+                        VALUES ('i2', 'o2', 'p1', 'Apple', 1.50, 1, 1.50),
+                               ('i3', 'o2', 'p2', 'Banana', 0.25, 1, 0.25),
+                               ('i4', 'o3', 'p1', 'Apple', 1.50, 1, 1.50),
+                               ('i5', 'o3', 'p3', 'Cherry', 4.00, 1, 4.00);
+                        """)
+                .then()
+                .block();
+
+        adapter.loadCoPurchaseIndex();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!coPurchaseIndex.neighbours("p1", 10).contains("p3") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(List.of("p3"), coPurchaseIndex.neighbours("p1", 10));
+    }
+}
@@ -0,0 +1,188 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import com.sientong.groceries.config.TestDatabase;
+import com.sientong.groceries.domain.common.Money;
+import com.sientong.groceries.domain.common.Quantity;
+import com.sientong.groceries.domain.inventory.StockAlertService;
+import com.sientong.groceries.domain.product.Category;
+import com.sientong.groceries.domain.product.Product;
+import com.sientong.groceries.infrastructure.cache.ProductCache;
+import com.sientong.groceries.infrastructure.inventory.HotStockCounters;
+import com.sientong.groceries.infrastructure.inventory.StockShards;
+import com.sientong.groceries.infrastructure.persistence.repository.ReactiveProductRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.test.StepVerifier;
+
+class ProductRepositoryAdapterTest {
+    private DatabaseClient databaseClient;
+    private ProductRepositoryAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.assumeAvailable();
+        TestDatabase.truncate("products", "categories");
+        databaseClient = TestDatabase.databaseClient();
+        ProductCache productCache = new ProductCache(100, Duration.ofMinutes(10), Duration.ofSeconds(2), new SimpleMeterRegistry());
+        StockAlertService stockAlertService = mock(StockAlertService.class);
+        StockShards stockShards = new StockShards(databaseClient, TestDatabase.transactionalOperator(), productCache,
+                stockAlertService);
+        HotStockCounters hotStockCounters = new HotStockCounters(databaseClient, productCache, stockAlertService, List.of());
+        adapter = new ProductRepositoryAdapter(TestDatabase.repository(ReactiveProductRepository.class), databaseClient,
+                productCache, TestDatabase.transactionalOperator(), hotStockCounters, stockShards, stockAlertService);
+        databaseClient.sql("INSERT INTO categories (id, name, created_at) VALUES ('cat1', 'Fruits', CURRENT_TIMESTAMP)")
+                .then()
+                .block();
+    }
+
+    @Test
+    void save_ShouldInsertNewProductWithItsStock() {
+        StepVerifier.create(adapter.save(product("p1", "Apple", 10)))
+                .expectNextMatches(saved -> saved.getQuantity().getValue() == 10 && saved.getName().equals("Apple"))
+                .verifyComplete();
+    }
+
+    @Test
+    void save_ShouldSetStockOfShardedProductThroughItsShards() {
+        adapter.save(product("p1", "Apple", 10)).block();
+        adapter.shardStock("p1", 4).block();
+
+        StepVerifier.create(adapter.save(product("p1", "Green Apple", 40)))
+                .expectNextMatches(saved -> saved.getName().equals("Green Apple"))
+                .verifyComplete();
+
+        // Had the row been written directly, the next sync would have put the shards' 10 back.
+        assertEquals(40, shardTotal("p1"));
+    }
+
+    @Test
+    void upsertAll_ShouldLeaveStockOfExistingProductsToUpdateStock() {
+        adapter.save(product("p1", "Apple", 10)).block();
+        adapter.save(product("p2", "Banana", 5)).block();
+        adapter.shardStock("p1", 2).block();
+
+        StepVerifier.create(adapter.upsertAll(List.of(product("p1", "Apple", 10), product("p2", "Banana", 7),
+                        product("p3", "Cherry", 3))))
+                .expectNext(3L)
+                .verifyComplete();
+
+        assertEquals(10, shardTotal("p1"));
+        StepVerifier.create(adapter.findAllByIds(List.of("p2", "p3")))
+                .expectNextMatches(products -> products.get("p2").getQuantity().getValue() == 7
+                        && products.get("p3").getQuantity().getValue() == 3)
+                .verifyComplete();
+    }
+
+    @Test
+    void findById_ShouldServeRepeatedLookupsFromCache() {
+        adapter.save(product("p1", "Apple", 10)).block();
+        adapter.findById("p1").block();
+        rename("p1", "Changed Elsewhere");
+
+        StepVerifier.create(adapter.findById("p1"))
+                .expectNextMatches(product -> product.getName().equals("Apple"))
+                .verifyComplete();
+    }
+
+    @Test
+    void updateStock_ShouldInvalidateCachedProduct() {
+        adapter.save(product("p1", "Apple", 10)).block();
+        adapter.findById("p1").block();
+        rename("p1", "Renamed Apple");
+
+        adapter.updateStock("p1", Quantity.of(250, "piece")).block();
+
+        StepVerifier.create(adapter.findById("p1"))
+                .expectNextMatches(product -> product.getName().equals("Renamed Apple")
+                        && product.getQuantity().getValue() == 250)
+                .verifyComplete();
+    }
+
+    @Test
+    void decrementStock_ShouldLeaveSoldOutProductReadable() {
+        adapter.save(product("p1", "Apple", 3)).block();
+        adapter.findById("p1").block();
+
+        adapter.decrementStock(null, Map.of("p1", 3)).block();
+
+        StepVerifier.create(adapter.findById("p1"))
+                .expectNextMatches(product -> product.getQuantity().getValue() == 0)
+                .verifyComplete();
+        StepVerifier.create(adapter.findAllByIds(List.of("p1")))
+                .expectNextMatches(products -> products.get("p1").getQuantity().getValue() == 0)
+                .verifyComplete();
+        StepVerifier.create(adapter.findOutOfStockProducts().map(Product::getId))
+                .expectNext("p1")
+                .verifyComplete();
+    }
+
+    @Test
+    void countListed_ShouldReadTotalsKeptByCategoryCounts() {
+        databaseClient.sql("INSERT INTO categories (id, name, created_at) VALUES ('cat2', 'Dairy', CURRENT_TIMESTAMP)")
+                .then()
+                .block();
+        adapter.upsertAll(List.of(product("p1", "Apple", 10), product("p2", "Banana", 3), product("p3", "Cherry", 5))).block();
+        adapter.deleteById("p3").block();
+
+        StepVerifier.create(adapter.countListed(null))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(adapter.countListed("cat1"))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(adapter.countListed("cat2"))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    void searchSimilar_ShouldApplyRequestedThresholdForItsTransactionOnly() {
+        adapter.save(product("p1", "Greek Yogurt", 10)).block();
+
+        // "yoghurt" is a 0.5 word similarity match, below the database default of 0.6.
+        StepVerifier.create(adapter.searchSimilar("yoghurt", 0.4, 5).map(Product::getName))
+                .expectNext("Greek Yogurt")
+                .verifyComplete();
+        StepVerifier.create(adapter.searchSimilar("yoghurt", 0.55, 5))
+                .verifyComplete();
+        StepVerifier.create(databaseClient.sql("SELECT current_setting('pg_trgm.word_similarity_threshold') AS threshold")
+                        .map((row, metadata) -> row.get("threshold", String.class))
+                        .one())
+                .expectNext("0.6")
+                .verifyComplete();
+    }
+
+    // Behind the adapter's back, so only a reload can see it.
+    private void rename(String productId, String name) {
+        databaseClient.sql("UPDATE products SET name = :name WHERE id = :id")
+                .bind("name", name)
+                .bind("id", productId)
+                .then()
+                .block();
+    }
+
+    private int shardTotal(String productId) {
+        return databaseClient.sql("SELECT CAST(SUM(quantity) AS INTEGER) AS total FROM product_stock_shards WHERE product_id = :id")
+                .bind("id", productId)
+                .map((row, metadata) -> row.get("total", Integer.class))
+                .one()
+                .block();
+    }
+
+    private static Product product(String id, String name, int quantity) {
+        return new Product(id, name, null, Money.of(BigDecimal.valueOf(1.99), "USD"), Category.of("cat1", "Fruits"),
+                Quantity.of(quantity, "piece"), null, null, null);
+    }
+}
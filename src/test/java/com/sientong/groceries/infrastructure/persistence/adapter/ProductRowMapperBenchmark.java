@@ -0,0 +1,90 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sientong.groceries.domain.product.Product;
+import com.sientong.groceries.infrastructure.persistence.entity.ProductEntity;
+
+import io.r2dbc.spi.Row;
+
+/**
+ * Per-row cost of mapping a {@code SELECT * FROM products} row: the former by-name lookups
+ * through {@link ProductEntity} against {@link ProductRowMapper}. Run after
+ * {@code mvn test-compile} with
+ * {@code java -cp target/test-classes:target/classes:<test classpath> \
+ * com.sientong.groceries.infrastructure.persistence.adapter.ProductRowMapperBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductRowMapperBenchmark {
+    private TestRows.Metadata metadata;
+    private TestRows.TestRow row;
+    private ProductRowMapper mapper;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        // Column order of the products table after all migrations, search_vector included.
+        metadata = TestRows.metadata("id", "name", "description", "price", "quantity", "created_at",
+                "updated_at", "category_id", "image_url", "category_name", "currency", "unit", "search_vector",
+                "reserved_quantity", "reorder_threshold");
+        row = metadata.row("p1", "Organic Apples", "Fresh organic apples", new BigDecimal("5.99"), 100, now,
+                now, "cat-1", "http://example.com/apple.jpg", "Fruits", "USD", "kg", "'appl':2A 'organ':1A",
+                0, 10);
+        mapper = new ProductRowMapper();
+    }
+
+    @Benchmark
+    public Product byName() {
+        return byName(row).toDomain();
+    }
+
+    @Benchmark
+    public Product byPosition() {
+        return mapper.apply(row, metadata);
+    }
+
+    // The mapping ProductRepositoryAdapter used before ProductRowMapper.
+    private static ProductEntity byName(Row row) {
+        return ProductEntity.builder()
+                .id(row.get("id", String.class))
+                .name(row.get("name", String.class))
+                .description(row.get("description", String.class))
+                .categoryId(row.get("category_id", String.class))
+                .categoryName(row.get("category_name", String.class))
+                .price(row.get("price", BigDecimal.class))
+                .currency(row.get("currency", String.class))
+                .quantity(row.get("quantity", Integer.class))
+                .unit(row.get("unit", String.class))
+                .imageUrl(row.get("image_url", String.class))
+                .createdAt(row.get("created_at", LocalDateTime.class))
+                .updatedAt(row.get("updated_at", LocalDateTime.class))
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductRowMapperBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
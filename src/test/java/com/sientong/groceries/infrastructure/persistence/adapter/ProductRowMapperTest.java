@@ -0,0 +1,39 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import com.sientong.groceries.domain.product.Product;
+
+class ProductRowMapperTest {
+
+    @Test
+    void shouldMapRowsOfDifferentResultSets() {
+        LocalDateTime now = LocalDateTime.of(2025, 3, 13, 0, 0);
+        TestRows.Metadata full = TestRows.metadata("id", "name", "description", "price", "category_id",
+                "category_name", "quantity", "created_at", "updated_at", "image_url", "currency", "unit");
+        TestRows.Metadata reordered = TestRows.metadata("NAME", "ID", "PRICE", "CATEGORY_ID", "QUANTITY", "UNIT");
+        ProductRowMapper mapper = new ProductRowMapper();
+
+        Product apple = mapper.apply(full.row("p1", "Apple", "Crunchy", new BigDecimal("1.99"), "cat-1",
+                "Fruits", 12, now, now, "http://example.com/apple.jpg", "EUR", "kg"), full);
+        Product milk = mapper.apply(reordered.row("Milk", "p2", new BigDecimal("0.99"), "cat-2", 3, "l"), reordered);
+
+        assertEquals("Apple", apple.getName());
+        assertEquals("EUR", apple.getPrice().getCurrency());
+        assertEquals(12, apple.getQuantity().getValue());
+        assertEquals("kg", apple.getQuantity().getUnit());
+        assertEquals(now, apple.getUpdatedAt());
+        assertEquals("Fruits", apple.getCategory().getName());
+        assertEquals("p2", milk.getId());
+        assertEquals("cat-2", milk.getCategory().getId());
+        assertNull(milk.getCategory().getName());
+        assertEquals("USD", milk.getPrice().getCurrency());
+        assertNull(milk.getDescription());
+    }
+}
@@ -0,0 +1,146 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import com.sientong.groceries.config.TestDatabase;
+import com.sientong.groceries.domain.inventory.StockAlertService;
+import com.sientong.groceries.infrastructure.cache.ProductCache;
+import com.sientong.groceries.infrastructure.inventory.HotStockCounters;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.test.StepVerifier;
+
+class ReservationRepositoryAdapterTest {
+    private static final Duration TTL = Duration.ofMinutes(15);
+
+    private DatabaseClient databaseClient;
+    private ReservationRepositoryAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.assumeAvailable();
+        TestDatabase.truncate("products", "categories");
+        databaseClient = TestDatabase.databaseClient();
+        HotStockCounters hotStockCounters = new HotStockCounters(databaseClient,
+                new ProductCache(10, Duration.ofMinutes(1), Duration.ofSeconds(1), new SimpleMeterRegistry()),
+                mock(StockAlertService.class), List.of());
+        adapter = new ReservationRepositoryAdapter(databaseClient, TestDatabase.transactionalOperator(), hotStockCounters);
+        databaseClient.sql("""
+                        INSERT INTO categories (id, name, created_at) VALUES ('cat1', 'Fruits', CURRENT_TIMESTAMP);
+                        INSERT INTO products (id, name, price, currency, quantity, unit, category_id, created_at, updated_at)
+                        VALUES ('p1', 'Apple', 1.50, 'USD', 10, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+                               ('p2', 'Pear', 2.00, 'USD', 10, 'piece', 'cat1', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+                        """)
+                .then()
+                .block();
+    }
+
+    @Test
+    void hold_ShouldReserveAndReplacePreviousHold() {
+        adapter.hold("user1", "p1", 4, TTL).block();
+
+        StepVerifier.create(adapter.hold("user1", "p1", 6, TTL))
+                .expectNext(true)
+                .verifyComplete();
+        assertEquals(6, reserved("p1"));
+        assertEquals(4, available("p1"));
+    }
+
+    @Test
+    void hold_ShouldFailWhenOthersHoldTheStock() {
+        adapter.hold("user1", "p1", 8, TTL).block();
+
+        StepVerifier.create(adapter.hold("user2", "p1", 3, TTL))
+                .expectNext(false)
+                .verifyComplete();
+        assertEquals(8, reserved("p1"));
+    }
+
+    @Test
+    void hold_ShouldNotCountConcurrentFirstHoldsTwice() throws Exception {
+        CompletableFuture<Boolean> first;
+        CompletableFuture<Boolean> second;
+        // Both holds queue behind another transaction holding the products row, so both
+        // start before either has written its hold.
+        try (Connection other = TestDatabase.jdbcConnection()) {
+            other.setAutoCommit(false);
+            try (Statement statement = other.createStatement()) {
+                statement.execute("SELECT id FROM products WHERE id = 'p1' FOR UPDATE");
+            }
+            first = adapter.hold("user1", "p1", 3, TTL).toFuture();
+            second = adapter.hold("user1", "p1", 3, TTL).toFuture();
+            Thread.sleep(300);
+            other.commit();
+        }
+
+        assertEquals(true, first.get(5, TimeUnit.SECONDS));
+        assertEquals(true, second.get(5, TimeUnit.SECONDS));
+        assertEquals(3, reserved("p1"));
+    }
+
+    @Test
+    void hold_ShouldSucceedWithoutHoldingShardedProduct() {
+        databaseClient.sql("INSERT INTO product_stock_shards (product_id, shard, quantity) VALUES ('p1', 0, 5), ('p1', 1, 5)")
+                .then()
+                .block();
+
+        StepVerifier.create(adapter.hold("user1", "p1", 3, TTL))
+                .expectNext(true)
+                .verifyComplete();
+        assertEquals(0, reserved("p1"));
+    }
+
+    @Test
+    void hold_ShouldFailForMissingProduct() {
+        StepVerifier.create(adapter.hold("user1", "missing", 1, TTL))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void releaseAll_ShouldReturnEveryHoldOfTheHolder() {
+        adapter.hold("user1", "p1", 2, TTL).block();
+        adapter.hold("user1", "p2", 5, TTL).block();
+        adapter.hold("user2", "p2", 1, TTL).block();
+
+        adapter.releaseAll("user1").block();
+
+        assertEquals(0, reserved("p1"));
+        assertEquals(1, reserved("p2"));
+    }
+
+    @Test
+    void releaseExpired_ShouldReleaseOnlyExpiredHolds() {
+        adapter.hold("user1", "p1", 2, Duration.ZERO).block();
+        adapter.hold("user2", "p1", 3, TTL).block();
+
+        StepVerifier.create(adapter.releaseExpired(100))
+                .expectNext(1L)
+                .verifyComplete();
+        assertEquals(3, reserved("p1"));
+    }
+
+    private int reserved(String productId) {
+        return databaseClient.sql("SELECT reserved_quantity FROM products WHERE id = :id")
+                .bind("id", productId)
+                .map((row, metadata) -> row.get("reserved_quantity", Integer.class))
+                .one()
+                .block();
+    }
+
+    private int available(String productId) {
+        return adapter.availableToSell(productId).block();
+    }
+}
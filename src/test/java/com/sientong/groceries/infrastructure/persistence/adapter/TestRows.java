@@ -0,0 +1,66 @@
+package com.sientong.groceries.infrastructure.persistence.adapter;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Type;
+
+/**
+ * In-memory rows for mapper tests and benchmarks. Name lookups scan the columns
+ * case-insensitively, the way the Postgres driver resolves them.
+ */
+final class TestRows {
+    private TestRows() {
+    }
+
+    static Metadata metadata(String... columns) {
+        return new Metadata(Arrays.stream(columns).map(Column::new).toList());
+    }
+
+    record Column(String getName) implements ColumnMetadata {
+        @Override
+        public Type getType() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    record Metadata(List<Column> getColumnMetadatas) implements RowMetadata {
+        @Override
+        public ColumnMetadata getColumnMetadata(int index) {
+            return getColumnMetadatas.get(index);
+        }
+
+        @Override
+        public ColumnMetadata getColumnMetadata(String name) {
+            return getColumnMetadatas.get(indexOf(name));
+        }
+
+        int indexOf(String name) {
+            for (int i = 0; i < getColumnMetadatas.size(); i++) {
+                if (getColumnMetadatas.get(i).getName().equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+            throw new java.util.NoSuchElementException("Column name '" + name + "' does not exist");
+        }
+
+        TestRow row(Object... values) {
+            return new TestRow(this, values);
+        }
+    }
+
+    record TestRow(Metadata getMetadata, Object[] values) implements Row {
+        @Override
+        public <T> T get(int index, Class<T> type) {
+            return type.cast(values[index]);
+        }
+
+        @Override
+        public <T> T get(String name, Class<T> type) {
+            return get(getMetadata.indexOf(name), type);
+        }
+    }
+}